@@ -0,0 +1,87 @@
+package minicraft.core;
+
+import java.util.Arrays;
+
+import minicraft.entity.Entity;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A hash map from entity ids to entities, with plain int keys so lookups don't box anything.
+ * It uses open addressing with linear probing; removals shift later entries back instead of leaving markers.
+ */
+class EntityIdMap {
+
+	private int[] keys = new int[256];
+	private Entity[] values = new Entity[256]; // a null value marks an empty slot.
+	private int size = 0;
+
+	private int slot(int eid) {
+		int h = eid * 0x9E3779B9; // spreads out ids that are close together.
+		return (h ^ (h >>> 16)) & (keys.length - 1);
+	}
+
+	@Nullable
+	Entity get(int eid) {
+		for(int i = slot(eid); values[i] != null; i = (i + 1) & (keys.length - 1))
+			if(keys[i] == eid)
+				return values[i];
+		return null;
+	}
+
+	void put(int eid, Entity e) {
+		if((size + 1) * 2 > keys.length)
+			resize(keys.length * 2);
+
+		int i = slot(eid);
+		for(; values[i] != null; i = (i + 1) & (keys.length - 1)) {
+			if(keys[i] == eid) {
+				values[i] = e;
+				return;
+			}
+		}
+		keys[i] = eid;
+		values[i] = e;
+		size++;
+	}
+
+	/** Removes the entry for the id, but only if it maps to the given entity. */
+	void remove(int eid, Entity e) {
+		int mask = keys.length - 1;
+		int i = slot(eid);
+		for(; values[i] != null; i = (i + 1) & mask)
+			if(keys[i] == eid)
+				break;
+		if(values[i] != e || e == null) return;
+
+		values[i] = null;
+		size--;
+
+		// move back any entries after it that would no longer be found.
+		for(int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int home = slot(keys[j]);
+			if(i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				values[j] = null;
+				i = j;
+			}
+		}
+	}
+
+	void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	private void resize(int length) {
+		int[] oldKeys = keys;
+		Entity[] oldValues = values;
+		keys = new int[length];
+		values = new Entity[length];
+		size = 0;
+		for(int i = 0; i < oldKeys.length; i++)
+			if(oldValues[i] != null)
+				put(oldKeys[i], oldValues[i]);
+	}
+}
@@ -11,17 +11,24 @@ import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
 
 import minicraft.core.io.ConsoleReader;
+import minicraft.gfx.Screen;
+import minicraft.level.LevelGen;
+import minicraft.level.ParallelTicker;
+import minicraft.network.MinicraftConnection;
 import minicraft.screen.WorldSelectDisplay;
 
 public class Initializer extends Game {
 	private Initializer() {}
 	
-	static int fra, tik; //these store the number of frames and ticks in the previous second; used for fps, at least.
+	static volatile int fra, tik; //these store the number of frames and ticks in the previous second; used for fps, at least.
 	
 	public static int getCurFps() { return fra; }
 	
+	static final int MAX_CATCH_UP_TICKS = 40; // if the server falls further behind than this, it skips the missed ticks instead of rushing through them all.
+	
 	static void parseArgs(String[] args) {
 		boolean debug = false;
 		boolean autoclient = false;
@@ -38,6 +45,20 @@ public class Initializer extends Game {
 			}
 			if(args[i].equals("--localclient"))
 				autoclient = true;
+			if(args[i].equals("--textprotocol"))
+				MinicraftConnection.binaryFramesEnabled = false; // for talking to older versions, or debugging packets.
+			if(args[i].equals("--parallelticks"))
+				ParallelTicker.enabled = true; // ticks the levels of a dedicated server on separate threads.
+			if(args[i].equals("--parallellighting"))
+				Screen.parallelOverlay = true;
+			if(args[i].equals("--worldgenretries") && i+1 < args.length) {
+				i++;
+				try {
+					LevelGen.maxRetries = Math.max(0, Integer.parseInt(args[i]));
+				} catch(NumberFormatException ex) {
+					System.err.println("Invalid number of world generation retries: " + args[i]);
+				}
+			}
 			if(args[i].equals("--server")) {
 				autoserver = true;
 				if(i+1 < args.length) {
@@ -62,19 +83,24 @@ public class Initializer extends Game {
 	/** This is the main loop that runs the game. It:
 	 *	-keeps track of the amount of time that has passed
 	 *	-fires the ticks needed to run the game
-	 *	-fires the command to render out the screen.
+	 * and records a frame after them, which another thread draws and shows, so slow frames don't hold up the ticks.
 	 */
 	static void run() {
 		long lastTime = System.nanoTime();
-		long lastRender = System.nanoTime();
 		double unprocessed = 0;
-		int frames = 0;
 		int ticks = 0;
 		long lastTimer1 = System.currentTimeMillis();
 		
-		//main game loop? calls tick() and render().
-		if(!HAS_GUI)
+		//main game loop? calls tick(); render() is called by the render thread.
+		if(!HAS_GUI) {
 			new ConsoleReader().start();
+			runServer();
+			return;
+		}
+		
+		Thread renderThread = new Thread(Initializer::runRenderer, "Render");
+		renderThread.setDaemon(true);
+		renderThread.start();
 		
 		while (running) {
 			long now = System.nanoTime();
@@ -82,32 +108,86 @@ public class Initializer extends Game {
 			if(menu == null) nsPerTick /= Updater.gamespeed;
 			unprocessed += (now - lastTime) / nsPerTick; //figures out the unprocessed time between now and lastTime.
 			lastTime = now;
+			boolean ticked = false;
 			while (unprocessed >= 1) { // If there is unprocessed time, then tick.
 				//if(debug) System.out.println("Ticking...");
 				ticks++;
 				Updater.tick(); // calls the tick method (in which it calls the other tick methods throughout the code.
+				ticked = true;
 				unprocessed--;
 			}
+			if (ticked)
+				Renderer.tickDone((long) nsPerTick); // records the frame for the render thread; only the last of several ticks in a row would be seen.
 			
-			try {
-				Thread.sleep(2); // makes a small pause for 2 milliseconds
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-			
-			if ((now - lastRender) / 1.0E9 > 1.0 / MAX_FPS) {
-				frames++;
-				lastRender = System.nanoTime();
-				Renderer.render();
-			}
+			LockSupport.parkNanos((long) ((1 - unprocessed) * nsPerTick)); // waits until the next tick is due.
 			
 			if (System.currentTimeMillis() - lastTimer1 > 1000) { //updates every 1 second
 				lastTimer1 += 1000; // adds a second to the timer
 				
-				fra = frames; //saves total frames in last second
 				tik = ticks; //saves total ticks in last second
-				frames = 0; //resets frames
-				ticks = 0; //resets ticks; ie, frames and ticks only are per second
+				ticks = 0; //resets ticks; ie, ticks only are per second
+			}
+		}
+	}
+	
+	/** The loop of the render thread; it draws and shows a frame whenever one is due, going by the fps setting. */
+	private static void runRenderer() {
+		long lastRender = System.nanoTime();
+		int frames = 0;
+		long lastTimer1 = System.currentTimeMillis();
+		
+		while (running) {
+			long nsPerFrame = 1_000_000_000L / MAX_FPS;
+			long now = System.nanoTime();
+			if(now - lastRender < nsPerFrame) {
+				LockSupport.parkNanos(lastRender + nsPerFrame - now);
+				continue;
+			}
+			
+			lastRender = now;
+			frames++;
+			Renderer.render();
+			
+			if (System.currentTimeMillis() - lastTimer1 > 1000) {
+				lastTimer1 += 1000;
+				fra = frames; //saves total frames in last second
+				frames = 0;
+			}
+		}
+	}
+	
+	
+	/** The main loop of a dedicated server. There is nothing to render, so it just waits until each tick is due, and measures how long the ticks take. */
+	private static void runServer() {
+		TickMetrics.enabled = true;
+		long nextTick = System.nanoTime();
+		long lastSecond = nextTick;
+		
+		while (running) {
+			int tps = Updater.normSpeed;
+			if(menu == null) tps *= Updater.gamespeed;
+			long nsPerTick = 1_000_000_000L / tps;
+			
+			long now = System.nanoTime();
+			if(now < nextTick) {
+				LockSupport.parkNanos(nextTick - now);
+				continue;
+			}
+			
+			long behind = (now - nextTick) / nsPerTick;
+			if(behind > MAX_CATCH_UP_TICKS) {
+				TickMetrics.ticksSkipped(behind);
+				nextTick += behind * nsPerTick;
+			}
+			
+			Updater.tick();
+			long tickEnd = System.nanoTime();
+			TickMetrics.tickDone(tickEnd - now);
+			nextTick += nsPerTick;
+			
+			if(tickEnd - lastSecond >= 1_000_000_000L) {
+				TickMetrics.endSecond((tickEnd - lastSecond) / 1E9, tps);
+				lastSecond = tickEnd;
 			}
 		}
 	}
@@ -139,6 +219,7 @@ public class Initializer extends Game {
 				float w = frame.getWidth() - frame.getInsets().left - frame.getInsets().right;
 				float h = frame.getHeight() - frame.getInsets().top - frame.getInsets().bottom;
 				Renderer.SCALE = Math.min(w / Renderer.WIDTH, h / Renderer.HEIGHT);
+				Renderer.windowResized();
 			}
 		});
 		
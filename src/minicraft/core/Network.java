@@ -4,10 +4,8 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 import minicraft.entity.Entity;
-import minicraft.level.Level;
 import minicraft.network.MinicraftServer;
 import minicraft.saveload.Load;
 import minicraft.screen.LoadingDisplay;
@@ -23,7 +21,9 @@ import org.jetbrains.annotations.Nullable;
 public class Network extends Game {
 	private Network() {}
 	
-	private static final Random random = new Random();
+	private static final EntityIdMap entityIds = new EntityIdMap(); // the entities in all levels, by id.
+	private static int nextEntityId = 1;
+	private static int nextClientEntityId = -2; // ids for entities that only exist on this client; -1 means no id yet.
 	
 	static boolean autoclient = false; // used in the initScreen method; jumps to multiplayer menu as client
 	
@@ -56,44 +56,50 @@ public class Network extends Game {
 	}
 	
 	@Nullable
-	public static Entity getEntity(int eid) {
-		for(Level level: levels) {
-			if(level == null) continue;
-			for(Entity e: level.getEntityArray())
-				if(e.eid == eid)
-					return e;
-		}
-		
-		return null;
+	public static synchronized Entity getEntity(int eid) {
+		Entity e = entityIds.get(eid);
+		return e != null && e.eid == eid ? e : null;
+	}
+	
+	/// these keep the id registry in line with the entities that are in a level; only Level should call them.
+	public static synchronized void registerEntity(Entity e) { entityIds.put(e.eid, e); }
+	public static synchronized void unregisterEntity(Entity e) { entityIds.remove(e.eid, e); }
+	public static synchronized void clearEntityIds() { entityIds.clear(); }
+	
+	/** Moves an entity in the registry, after its id has been changed. */
+	public static synchronized void entityIdChanged(Entity e, int oldEid) {
+		if(entityIds.get(oldEid) != e) return; // not registered.
+		entityIds.remove(oldEid, e);
+		entityIds.put(e.eid, e);
 	}
 	
-	public static int generateUniqueEntityId() {
+	public static synchronized int generateUniqueEntityId() {
+		if(isValidClient()) {
+			// the server hands out the positive ids, so entities made only on this client, like particles, count down from -2 instead; that way they can't take the id of an entity the server sends later.
+			int eid;
+			do {
+				eid = nextClientEntityId;
+				nextClientEntityId = nextClientEntityId == Integer.MIN_VALUE ? -2 : nextClientEntityId - 1;
+			} while(getEntity(eid) != null);
+			
+			return eid;
+		}
+		
+		// ids are handed out in order, so they're only reused after going through every positive int; the check skips ids taken by loaded entities.
 		int eid;
-		int tries = 0; // just in case it gets out of hand.
 		do {
-			tries++;
-			if(tries == 1000)
-				System.out.println("Note: Trying 1000th time to find valid entity id...(Will continue)");
-			
-			eid = random.nextInt();
+			eid = nextEntityId;
+			nextEntityId = nextEntityId == Integer.MAX_VALUE ? 1 : nextEntityId + 1;
 		} while(!idIsAvailable(eid));
 		
 		return eid;
 	}
 	
-	public static boolean idIsAvailable(int eid) {
+	public static synchronized boolean idIsAvailable(int eid) {
 		if(eid == 0) return false; // this is reserved for the main player... kind of...
 		if(eid < 0) return false; // id's must be positive numbers.
 		
-		for(Level level: levels) {
-			if(level == null) continue;
-			for(Entity e: level.getEntityArray()) {
-				if(e.eid == eid)
-					return false;
-			}
-		}
-		
-		return true;
+		return getEntity(eid) == null;
 	}
 	
 	public static String onlinePrefix() {
@@ -3,13 +3,19 @@ package minicraft.core;
 import javax.imageio.ImageIO;
 
 import java.awt.Canvas;
-import java.awt.Graphics;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
 import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
+import java.awt.image.VolatileImage;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import minicraft.entity.furniture.Bed;
 import minicraft.entity.mob.Player;
@@ -32,12 +38,30 @@ public class Renderer extends Game {
 	public static final int WIDTH = 288;
 	static float SCALE = 3;
 	
-	public static Screen screen; // Creates the main screen
+	public static Screen screen; // Creates the main screen; the game draws on it to record each frame.
+	private static Screen frameScreen; // draws the recorded frames into the image, on the render thread.
 	
 	static Canvas canvas = new Canvas();
 	private static BufferedImage image; // creates an image to be displayed on the screen.
 	private static int[] pixels; // the array of pixels that will be displayed on the screen.
 	
+	/*
+	 * The frames, recorded after each tick. The game records into its own list, then swaps it for the latest one; the render thread
+	 * swaps its own list for the latest one when that is newer. So no list is used by both threads at once, and neither waits on the other.
+	 */
+	private static DrawList recording = new DrawList(), drawing = new DrawList();
+	private static final AtomicReference<DrawList> latest = new AtomicReference<>(new DrawList());
+	private static volatile Thread gameThread = null; // the thread of the game loop, the only one that records frames.
+	private static long tickLength = 1;
+	
+	private static VolatileImage scaled = null; // the frame, scaled up to the size it is shown at, kept where the graphics card can draw it from.
+	private static volatile boolean resized = true; // the scaled image is made again at the next frame.
+	
+	// how long drawing and showing frames takes, on average over a second.
+	private static long drawNanos = 0, presentNanos = 0, timedSince = System.nanoTime();
+	private static int timedFrames = 0;
+	private static String frameTimes = "";
+	
 	private static Screen lightScreen; // Creates a front screen to render the darkness in caves (Fog of war).
 	
 	public static boolean readyToRenderGameplay = false;
@@ -75,7 +99,8 @@ public class Renderer extends Game {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		screen.pixels = pixels;
+		frameScreen = new Screen(screen, WIDTH, HEIGHT);
+		frameScreen.pixels = pixels;
 		
 		if(HAS_GUI) {
 			canvas.createBufferStrategy(3);
@@ -84,10 +109,67 @@ public class Renderer extends Game {
 	}
 	
 	
-	/** renders the current screen. Called in game loop, a bit after tick(). */
-	public static void render() {
+	/// called by the game loop after its ticks, with how long a tick lasts.
+	static void tickDone(long nsPerTick) {
+		gameThread = Thread.currentThread();
+		tickLength = nsPerTick;
+		recordFrame();
+	}
+	
+	/**
+	 * Records a frame of the game as it is now, for the render thread to draw. Called after ticks, and while saving.
+	 * Saves on other threads don't record anything, since the game could be changing meanwhile; the game loop records the next frame soon enough.
+	 */
+	public static void recordFrame() {
 		if(!HAS_GUI || screen == null) return; // no point in this if there's no gui... :P
+		if(Thread.currentThread() != gameThread) return;
+		
+		DrawList list = recording;
+		list.reset();
+		screen.record(list);
+		try {
+			drawFrame();
+		} finally {
+			screen.record(null);
+		}
+		list.setTime(System.nanoTime(), tickLength);
+		recording = latest.getAndSet(list);
+	}
+	
+	/** Draws the latest recorded frame, and shows it on the window. Called by the render thread. */
+	public static void render() {
+		if(!HAS_GUI || frameScreen == null) return;
+		
+		if(latest.get().isNewerThan(drawing))
+			drawing = latest.getAndSet(drawing); // only the game swaps in newer lists, so this is at least as new.
+		
+		long start = System.nanoTime();
+		drawing.draw(frameScreen, drawing.getPartialTick(start));
+		long drawTime = System.nanoTime() - start;
+		
+		start = System.nanoTime();
+		present(image); // this can take longer than drawing the frame, at large window sizes; the game keeps ticking meanwhile.
+		frameTimed(drawTime, System.nanoTime() - start);
+	}
+	
+	private static synchronized void frameTimed(long drawTime, long presentTime) {
+		drawNanos += drawTime;
+		presentNanos += presentTime;
+		timedFrames++;
 		
+		long now = System.nanoTime();
+		if(now - timedSince >= 1_000_000_000L) {
+			frameTimes = String.format(Locale.ROOT, "draw %.1fms show %.1fms", drawNanos / 1E6 / timedFrames, presentNanos / 1E6 / timedFrames);
+			drawNanos = presentNanos = 0;
+			timedFrames = 0;
+			timedSince = now;
+		}
+	}
+	
+	/** Called when the window changes size. */
+	static void windowResized() { resized = true; }
+	
+	private static void drawFrame() {
 		if(readyToRenderGameplay) {
 			if(isValidServer()) {
 				screen.clear(0);
@@ -111,25 +193,45 @@ public class Renderer extends Game {
 			menu.render(screen);
 		
 		if (!canvas.hasFocus() && !ISONLINE) renderFocusNagger(); // calls the renderFocusNagger() method, which creates the "Click to Focus" message.
-		
-		
+	}
+	
+	/** Shows a finished frame on the window. */
+	private static void present(BufferedImage image) {
 		BufferStrategy bs = canvas.getBufferStrategy(); // creates a buffer strategy to determine how the graphics should be buffered.
-		Graphics g = bs.getDrawGraphics(); // gets the graphics in which java draws the picture
-		g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight()); // draws the a rect to fill the whole window (to cover last?)
-
-		// scales the pixels.
-		int ww = getWindowSize().width;
-		int hh = getWindowSize().height;
+		Dimension size = getWindowSize();
 		
 		// gets the image offset.
-		int xo = (canvas.getWidth() - ww) / 2 + canvas.getParent().getInsets().left;
-		int yo = (canvas.getHeight() - hh) / 2 + canvas.getParent().getInsets().top;
-		g.drawImage(image, xo, yo, ww, hh, null); //draws the image on the window
-		g.dispose(); // releases any system items that are using this method. (so we don't have crappy framerates)
+		int xo = (canvas.getWidth() - size.width) / 2 + canvas.getParent().getInsets().left;
+		int yo = (canvas.getHeight() - size.height) / 2 + canvas.getParent().getInsets().top;
+		
+		do {
+			scaleImage(image, size);
+			Graphics2D g = (Graphics2D) bs.getDrawGraphics(); // gets the graphics in which java draws the picture
+			g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight()); // draws the a rect to fill the whole window (to cover last?)
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+			g.drawImage(scaled, xo, yo, null); // draws the image on the window, centered; it is already at its final size, so this is a plain copy.
+			g.dispose(); // releases any system items that are using this method. (so we don't have crappy framerates)
+		} while (scaled.contentsLost());
 		
 		bs.show(); // makes the picture visible. (probably)
 	}
 	
+	/// scales the frame up to the size it is shown at, in one step, into an image that the graphics card can keep.
+	private static void scaleImage(BufferedImage image, Dimension size) {
+		GraphicsConfiguration config = canvas.getGraphicsConfiguration();
+		if(resized || scaled == null || scaled.getWidth() != size.width || scaled.getHeight() != size.height || scaled.validate(config) == VolatileImage.IMAGE_INCOMPATIBLE) {
+			resized = false;
+			if(scaled != null) scaled.flush();
+			scaled = config.createCompatibleVolatileImage(Math.max(1, size.width), Math.max(1, size.height));
+			scaled.validate(config);
+		}
+		
+		Graphics2D g = scaled.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		g.drawImage(image, 0, 0, scaled.getWidth(), scaled.getHeight(), null);
+		g.dispose();
+	}
+	
 	
 	private static void renderLevel() {
 		Level level = levels[currentLevel];
@@ -138,6 +240,9 @@ public class Renderer extends Game {
 		int xScroll = player.x - Screen.w / 2; // scrolls the screen in the x axis.
 		int yScroll = player.y - (Screen.h - 8) / 2; // scrolls the screen in the y axis.
 		
+		// the frame is drawn partway between the last tick and this one, so the scroll follows the player from where it was then.
+		recording.setCamera(player.getRenderX(0) - Screen.w / 2, player.getRenderY(0) - (Screen.h - 8) / 2, xScroll, yScroll, level.w * 16 - Screen.w, level.h * 16 - Screen.h);
+		
 		//stop scrolling if the screen is at the ...
 		if (xScroll < 0) xScroll = 0; // ...left border.
 		if (yScroll < 0) yScroll = 0; // ...top border.
@@ -151,6 +256,7 @@ public class Renderer extends Game {
 				}
 		}
 		
+		screen.setMotion(0, 0, 0, 0); // the rest moves with the camera.
 		level.renderBackground(screen, xScroll, yScroll); // renders current level background
 		level.renderSprites(screen, xScroll, yScroll); // renders level sprites on screen
 		
@@ -161,6 +267,7 @@ public class Renderer extends Game {
 			level.renderLight(lightScreen, xScroll, yScroll, brightnessMultiplier); // finds (and renders) all the light from objects (like the player, lanterns, and lava).
 			screen.overlay(lightScreen, currentLevel, xScroll, yScroll); // overlays the light screen over the main screen.
 		}
+		screen.clearMotion();
 	}
 	
 	
@@ -341,6 +448,7 @@ public class Renderer extends Game {
 			ArrayList<String> info = new ArrayList<>();
 			info.add("VERSION " + Initializer.VERSION);
 			info.add(Initializer.fra + " fps");
+			info.add(frameTimes);
 			info.add("day tiks " + Updater.tickCount+" ("+Updater.getTime()+")");
 			info.add((Updater.normSpeed * Updater.gamespeed) + " tik/sec");
 			if(!isValidServer()) {
@@ -0,0 +1,78 @@
+package minicraft.core;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps track of how long the dedicated server's ticks take, and which parts of them take the longest.
+ * Times are summed over one second at a time; the last full second is what the STATUS command shows.
+ */
+public class TickMetrics {
+	private TickMetrics() {}
+
+	public enum Phase {
+		TILES ("tile ticks"),
+		ENTITIES ("entity ticks"),
+		NETWORK ("network flush"),
+		SPAWNING ("spawning");
+
+		public final String name;
+
+		Phase(String name) {
+			this.name = name;
+		}
+
+		public static final Phase[] values = Phase.values();
+	}
+
+	static boolean enabled = false; // only the dedicated server loop measures its ticks.
+
+	private static final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values.length); // levels may be ticked on several threads.
+	private static long tickNanos = 0, maxTickNanos = 0;
+	private static int ticks = 0;
+	private static long skippedTicks = 0;
+
+	private static volatile String[] lastSecond = {"No ticks measured yet."};
+
+	/** Returns the time to pass to end(), or 0 if ticks aren't being measured. */
+	public static long start() { return enabled ? System.nanoTime() : 0; }
+
+	public static void end(Phase phase, long start) {
+		if(enabled)
+			phaseNanos.addAndGet(phase.ordinal(), System.nanoTime() - start);
+	}
+
+	static void tickDone(long nanos) {
+		ticks++;
+		tickNanos += nanos;
+		maxTickNanos = Math.max(maxTickNanos, nanos);
+	}
+
+	static void ticksSkipped(long count) { skippedTicks += count; }
+
+	/// called once a second by the server loop, to make a report of the second that just passed.
+	static void endSecond(double seconds, int targetTps) {
+		double mspt = ticks == 0 ? 0 : tickNanos / 1E6 / ticks;
+		StringBuilder phases = new StringBuilder();
+		double phaseTotal = 0;
+		for(Phase phase: Phase.values) {
+			long nanos = phaseNanos.getAndSet(phase.ordinal(), 0); // reset even when no tick finished, so the time isn't counted again next second.
+			double ms = ticks == 0 ? 0 : nanos / 1E6 / ticks;
+			phaseTotal += ms;
+			phases.append(phases.length() == 0 ? "\t" : ", ").append(phase.name).append(String.format(Locale.ROOT, " %.2f", ms));
+		}
+		phases.append(String.format(Locale.ROOT, ", other %.2f (ms per tick)", Math.max(0, mspt - phaseTotal)));
+
+		lastSecond = new String[] {
+			String.format(Locale.ROOT, "Tps: %.1f of %d; mspt: %.2f avg, %.2f max (budget %.2f)", ticks / seconds, targetTps, mspt, maxTickNanos / 1E6, 1000D / targetTps),
+			phases.toString(),
+			"Catch-up: missed ticks are run back to back, up to " + Initializer.MAX_CATCH_UP_TICKS + " at a time; any more are skipped. Skipped so far: " + skippedTicks
+		};
+
+		ticks = 0;
+		tickNanos = 0;
+		maxTickNanos = 0;
+	}
+
+	public static String[] getReport() { return lastSecond; }
+}
@@ -1,11 +1,13 @@
 package minicraft.core;
 
+import minicraft.core.TickMetrics.Phase;
 import minicraft.core.io.Localization;
 import minicraft.core.io.Settings;
 import minicraft.entity.furniture.Bed;
 import minicraft.entity.mob.Player;
 import minicraft.item.Items;
 import minicraft.level.Level;
+import minicraft.level.ParallelTicker;
 import minicraft.level.tile.Tile;
 import minicraft.level.tile.Tiles;
 import minicraft.saveload.Save;
@@ -131,14 +133,27 @@ public class Updater extends Game {
 			scoreTime--;
 		}
 		
+		if(HAS_GUI && levels[currentLevel] != null)
+			levels[currentLevel].savePositions(); // frames are drawn between where things are now and where they are after this tick.
+		
 		boolean hadMenu = menu != null;
 		if(isValidServer()) {
 			// this is to keep the game going while online, even with an unfocused window.
 			input.tick();
-			for (Level floor : levels) {
-				if (floor == null) continue;
-				floor.tick(true);
+			long start = TickMetrics.start();
+			server.updateInterest(); // catches players that changed level, or were moved other than by their client.
+			TickMetrics.end(Phase.NETWORK, start);
+			if(ParallelTicker.enabled)
+				ParallelTicker.tick(levels);
+			else {
+				for (Level floor : levels) {
+					if (floor == null) continue;
+					floor.tick(true);
+				}
 			}
+			start = TickMetrics.start();
+			server.flushEntityUpdates(); // one frame per client, with everything that changed this tick.
+			TickMetrics.end(Phase.NETWORK, start);
 			
 			Tile.tickCount++;
 		}
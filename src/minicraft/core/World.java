@@ -5,6 +5,7 @@ import minicraft.entity.furniture.Bed;
 import minicraft.entity.mob.Player;
 import minicraft.entity.mob.RemotePlayer;
 import minicraft.level.Level;
+import minicraft.level.LevelGen;
 import minicraft.saveload.Load;
 import minicraft.saveload.Save;
 import minicraft.screen.LoadingDisplay;
@@ -116,6 +117,7 @@ public class World extends Game {
 		gameOver = false;
 		
 		levels = new Level[6];
+		Network.clearEntityIds();
 		
 		Updater.scoreTime = (Integer) Settings.get("scoretime") * 60 * Updater.normSpeed;
 		
@@ -134,6 +136,7 @@ public class World extends Game {
 				worldSize = (Integer) Settings.get("size");
 				
 				float loadingInc = 100f / (maxLevelDepth - minLevelDepth + 1); // the .002 is for floating point errors, in case they occur.
+				LevelGen.startGenerating(worldSize, worldSize, minLevelDepth, maxLevelDepth); // the maps are made at the same time; the levels below still wait for them in order.
 				for (int i = maxLevelDepth; i >= minLevelDepth; i--) {
 					// i = level depth; the array starts from the top because the parent level is used as a reference, so it should be constructed first. It is expected that the highest level will have a null parent.
 					if(debug) System.out.println("Loading level " + i + "...");
@@ -154,6 +157,7 @@ public class World extends Game {
 			Renderer.readyToRenderGameplay = true;
 		} else {
 			levels = new Level[6];
+			Network.clearEntityIds();
 			currentLevel = 3;
 		}
 		
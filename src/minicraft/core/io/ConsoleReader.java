@@ -6,8 +6,8 @@ import java.util.List;
 import java.util.Scanner;
 
 import minicraft.core.Game;
-import minicraft.core.Initializer;
 import minicraft.core.Network;
+import minicraft.core.TickMetrics;
 import minicraft.core.Updater;
 import minicraft.core.World;
 import minicraft.entity.Entity;
@@ -73,10 +73,11 @@ public class ConsoleReader extends Thread {
 		},
 		
 		STATUS
-		(null, "display some server stats.", "displays game version, server fps, and number of players connected.") {
+		(null, "display some server stats.", "displays game version, server tick rate and tick times, and number of players connected.") {
 			public void run(String[] args) {
 				System.out.println("Running "+Game.NAME+' '+Game.VERSION+(Game.debug?" (debug mode)":""));
-				System.out.println("Fps: " + Initializer.getCurFps());
+				for(String line: TickMetrics.getReport())
+					System.out.println(line);
 				System.out.println("Players connected: " + Game.server.getNumPlayers());
 				for(String info: Game.server.getClientInfo())
 					System.out.println("\t"+info);
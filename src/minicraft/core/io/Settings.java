@@ -3,6 +3,7 @@ package minicraft.core.io;
 import java.awt.GraphicsEnvironment;
 import java.util.HashMap;
 
+import minicraft.gfx.Screen;
 import minicraft.screen.entry.ArrayEntry;
 import minicraft.screen.entry.BooleanEntry;
 import minicraft.screen.entry.RangeEntry;
@@ -12,7 +13,7 @@ public class Settings {
 	private static HashMap<String, ArrayEntry> options = new HashMap<>();
 	
 	static {
-		options.put("fps", new RangeEntry("Max FPS", 10, 300, GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate()));
+		options.put("fps", new RangeEntry("Max FPS", 10, 300, getRefreshRate()));
 		options.put("diff", new ArrayEntry<>("Difficulty", "Easy", "Normal", "Hard"));
 		options.get("diff").setSelection(1);
 		options.put("mode", new ArrayEntry<>("Game Mode", "Survival", "Creative", "Hardcore", "Score"));
@@ -45,10 +46,18 @@ public class Settings {
 
 		options.put("textures", new ArrayEntry<>("Textures", "Original", "Custom"));
 		options.get("textures").setSelection(0);
+		options.get("textures").setChangeAction(value -> Screen.setCustomTextures("Custom".equals(value)));
 	}
 	
 	public static void init() {}
 	
+	// the refresh rate of the screen, or 60 if there isn't one (like when worlds are generated on a server).
+	private static int getRefreshRate() {
+		if(GraphicsEnvironment.isHeadless()) return 60;
+		int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+		return rate > 0 ? rate : 60;
+	}
+	
 	// returns the value of the specified option
 	public static Object get(String option) { return options.get(option.toLowerCase()).getValue(); }
 	
@@ -1,8 +1,13 @@
 package minicraft.entity;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 import minicraft.core.Game;
 import minicraft.core.Network;
@@ -34,15 +39,18 @@ public abstract class Entity implements Tickable {
 	// entity coordinates are per pixel, not per tile; each tile is 16x16 entity pixels.
 	protected final Random random = new Random();
 	public int x, y; // x, y entity coordinates on the map
+	private int prevX, prevY; // where the entity was at the start of the last tick; frames are drawn between this and x, y.
 	private int xr, yr; // x, y radius of entity
 	private boolean removed; // Determines if the entity is removed from it's level; checked in Level.java
 	protected Level level; // the level that the entity is on
 	public int col; // current color.
 	
 	public int eid; // this is intended for multiplayer, but I think it could be helpful in single player, too. certainly won't harm anything, I think... as long as finding a valid id doesn't take long...
-	private String prevUpdates = ""; // holds the last value returned from getUpdateString(), for comparison with the next call.
-	private String curDeltas = ""; // holds the updates returned from the last time getUpdates() was called.
+	private final EntityFields fields = new EntityFields(); // the networked fields, and which changed since the last update.
+	private String curDeltas = null; // the text form of the changed fields, once it has been asked for.
 	private boolean accessedUpdates = false;
+	
+	private static final Map<Class<? extends Entity>, String[]> fieldNames = new ConcurrentHashMap<>(); // the field names of each entity class, by field number.
 	private long lastUpdate;
 	
 	/**
@@ -67,6 +75,16 @@ public abstract class Entity implements Tickable {
 	
 	public abstract void render(Screen screen); // used to render the entity on screen.
 	
+	/** Remembers where the entity is at the start of a tick, so that it can be drawn partway between ticks. */
+	public void savePosition() {
+		prevX = x;
+		prevY = y;
+	}
+	
+	/** Returns where the entity should be drawn when the given fraction (0 to 1) of the time to the next tick has passed. Jumps of more than a tile aren't smoothed out. */
+	public int getRenderX(float partialTick) { return Math.abs(x - prevX) > 16 ? x : prevX + Math.round((x - prevX) * partialTick); }
+	public int getRenderY(float partialTick) { return Math.abs(y - prevY) > 16 ? y : prevY + Math.round((y - prevY) * partialTick); }
+	
 	@Override
 	public abstract void tick(); // used to update the entity.
 	
@@ -197,6 +215,7 @@ public abstract class Entity implements Tickable {
 		// finally, the entity moves!
 		x += xa;
 		y += ya;
+		level.entityMoved(this);
 		
 		return true; // the move was successful.
 	}
@@ -241,7 +260,7 @@ public abstract class Entity implements Tickable {
 		this.x = x;
 		this.y = y;
 		
-		if(eid < 0)
+		if(eid == -1) // client-only entities keep the negative ids they were given.
 			eid = Network.generateUniqueEntityId();
 	}
 	
@@ -295,6 +314,31 @@ public abstract class Entity implements Tickable {
 		}
 	}
 	
+	/** Applies field deltas in the binary form written by EntityFields.write(). */
+	public final void update(ByteBuffer deltas) {
+		String[] names = getFieldNames();
+		long mask = deltas.getLong();
+		for(int i = 0; i < names.length; i++) {
+			if((mask & 1L << i) == 0) continue;
+			updateField(names[i], EntityFields.readText(deltas));
+		}
+		
+		if(Game.isValidClient() && this instanceof MobAi) {
+			lastUpdate = System.nanoTime();
+		}
+	}
+	
+	private String[] getFieldNames() {
+		// the names depend only on the class, so they are found once, without touching this entity's own field values.
+		return fieldNames.computeIfAbsent(getClass(), c -> {
+			EntityFields names = new EntityFields();
+			names.begin();
+			writeFields(names);
+			names.end();
+			return names.getNames();
+		});
+	}
+	
 	/**
 	 * Updates one of the entity's fields based on a string pair.
 	 * Used to parse data from a server.
@@ -304,11 +348,15 @@ public abstract class Entity implements Tickable {
 	 */
 	protected boolean updateField(String fieldName, String val) {
 		switch(fieldName) {
-			case "eid": eid = Integer.parseInt(val); return true;
+			case "eid":
+				int oldEid = eid;
+				eid = Integer.parseInt(val);
+				Network.entityIdChanged(this, oldEid);
+				return true;
 			case "x": x = Integer.parseInt(val); return true;
 			case "y": y = Integer.parseInt(val); return true;
 			case "level":
-				if(val.equals("null")) return true; // this means no level.
+				if(val.equals("null") || val.equals("-1")) return true; // this means no level.
 				Level newLvl = World.levels[Integer.parseInt(val)];
 				if(newLvl != null && level != null) {
 					if(newLvl.depth == level.depth) return true;
@@ -323,14 +371,25 @@ public abstract class Entity implements Tickable {
 	/// I think I'll make these "getUpdates()" methods be an established thing, that returns all the things that can change that you need to account for when updating entities across a server.
 	/// by extension, the update() method should always account for all the variables specified here.
 	/**
-	 * Converts this entity to a string representation which can be sent to
-	 * a server or client.
-	 * @return Networking string representation of this entity.
+	 * Lists the fields that can change and need to be sent across a server, in a fixed order.
+	 * Subclasses call the super method first, then put their own fields.
+	 * @param fields Where the values are put.
 	 */
-	protected String getUpdateString() {
-		return "x,"+x+";"
-		+"y,"+y+";"
-		+"level,"+(level==null?"null":World.lvlIdx(level.depth));
+	protected void writeFields(EntityFields fields) {
+		fields.put("x", x);
+		fields.put("y", y);
+		fields.put("level", level==null?-1:World.lvlIdx(level.depth));
+	}
+	
+	/// collects the current field values, once per update cycle.
+	private void collectUpdates() {
+		if(accessedUpdates) return;
+		accessedUpdates = true; // after this they count as accessed.
+		
+		fields.begin();
+		writeFields(fields);
+		fields.end();
+		curDeltas = null;
 	}
 	
 	/**
@@ -339,14 +398,9 @@ public abstract class Entity implements Tickable {
 	 * @return Networking string representation of this entity.
 	 */
 	public final String getUpdates(boolean fetchAll) {
-		if(accessedUpdates) {
-			if(fetchAll) return prevUpdates;
-			else return curDeltas;
-		}
-		else {
-			if(fetchAll) return getUpdateString();
-			else return getUpdates();
-		}
+		if(!fetchAll) return getUpdates();
+		collectUpdates();
+		return fields.toUpdateString(fields.getAll());
 	}
 	
 	/**
@@ -354,41 +408,24 @@ public abstract class Entity implements Tickable {
 	 * @return String representation of all the variables which has changed since last time.
 	 */
 	public final String getUpdates() {
-		// if the updates have already been fetched and written, but not flushed, then just return those.
-		if(accessedUpdates) return curDeltas;
-		else accessedUpdates = true; // after this they count as accessed.
-		
-		/// first, get the current string of values, which includes any subclasses.
-		String updates = getUpdateString();
-		
-		if(prevUpdates.length() == 0) {
-			// if there were no values saved last call, our job is easy. But this is only the case the first time this is run.
-			prevUpdates = curDeltas = updates; // set the update field for next time
-			return updates; // and we're done!
-		}
-		
-		/// if we did have updates last time, then save them as an array, before overwriting the update field for next time.
-		String[] curUpdates = updates.split(";");
-		String[] prevUpdates = this.prevUpdates.split(";");
-		this.prevUpdates = updates;
-		
-		/// now, we have the current values, and the previous values, as arrays of key-value pairs sep. by commas. Now, the goal is to separate which are actually *updates*, meaning they are different from last time.
-		
-		StringBuilder deltas = new StringBuilder();
-		for(int i = 0; i < curUpdates.length; i++) { // b/c the string always contains the same number of pairs (and the same keys, in the same order), the indexes of cur and prev updates will be the same.
-			/// loop though each of the updates this call. If it is different from the last one, then add it to the list.
-			if(!curUpdates[i].equals(prevUpdates[i])) {
-				deltas.append(curUpdates[i]).append(";");
-			}
-		}
-		
-		curDeltas = deltas.toString();
-		
-		if(curDeltas.length() > 0) curDeltas = curDeltas.substring(0, curDeltas.length()-1); // cuts off extra ";"
-		
+		collectUpdates();
+		if(curDeltas == null)
+			curDeltas = fields.toUpdateString(fields.getDirty());
 		return curDeltas;
 	}
 	
+	/** Whether any field has changed since last time. */
+	public final boolean hasUpdates() {
+		collectUpdates();
+		return fields.getDirty() != 0;
+	}
+	
+	/** Writes the fields that have changed since last time, in binary form; see EntityFields.write(). */
+	public final void writeUpdates(DataOutput out) throws IOException {
+		collectUpdates();
+		fields.write(out, fields.getDirty());
+	}
+	
 	/// this marks the entity as having a new state to fetch.
 	public void flushUpdates() { accessedUpdates = false; }
 	
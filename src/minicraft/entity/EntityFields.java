@@ -0,0 +1,141 @@
+package minicraft.entity;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The networked fields of an entity, and which of them have changed.
+ * Each entity class lists its fields in Entity.writeFields(); a field's number is its position in that list,
+ * so superclass fields come first. Every time the fields are written, the ones whose value differs from the
+ * last time are marked in a bitmask, which can then be sent as text or as binary deltas.
+ */
+public class EntityFields {
+
+	public static final int MAX_FIELDS = 64; // one bit each in the dirty mask.
+
+	private static final byte TYPE_INT = 0;
+	private static final byte TYPE_BOOLEAN = 1;
+	private static final byte TYPE_STRING = 2;
+
+	private String[] names = new String[8];
+	private byte[] types = new byte[8];
+	private int[] ints = new int[8];
+	private String[] strings = new String[8];
+
+	private int count = 0, cursor = 0;
+	private long dirty = 0;
+	private boolean written = false; // all fields count as changed until they have been written once.
+
+	void begin() {
+		cursor = 0;
+		dirty = 0;
+	}
+
+	void end() {
+		count = cursor;
+		written = true;
+	}
+
+	private int next(String name, byte type) {
+		int i = cursor++;
+		if(i >= MAX_FIELDS)
+			throw new IllegalStateException("entity has more than " + MAX_FIELDS + " networked fields");
+		if(i == names.length) {
+			names = Arrays.copyOf(names, i * 2);
+			types = Arrays.copyOf(types, i * 2);
+			ints = Arrays.copyOf(ints, i * 2);
+			strings = Arrays.copyOf(strings, i * 2);
+		}
+		names[i] = name;
+		types[i] = type;
+		return i;
+	}
+
+	public void put(String name, int val) {
+		int i = next(name, TYPE_INT);
+		if(!written || ints[i] != val) {
+			ints[i] = val;
+			dirty |= 1L << i;
+		}
+	}
+
+	public void put(String name, boolean val) {
+		int i = next(name, TYPE_BOOLEAN);
+		int intVal = val ? 1 : 0;
+		if(!written || ints[i] != intVal) {
+			ints[i] = intVal;
+			dirty |= 1L << i;
+		}
+	}
+
+	public void put(String name, String val) {
+		int i = next(name, TYPE_STRING);
+		if(!written || !Objects.equals(strings[i], val)) {
+			strings[i] = val;
+			dirty |= 1L << i;
+		}
+	}
+
+	/** The fields that changed the last time they were written. */
+	public long getDirty() { return dirty; }
+
+	public long getAll() { return count == MAX_FIELDS ? -1L : (1L << count) - 1; }
+
+	String[] getNames() { return Arrays.copyOf(names, count); }
+
+	private String getText(int i) {
+		switch(types[i]) {
+			case TYPE_BOOLEAN: return String.valueOf(ints[i] == 1);
+			case TYPE_STRING: return strings[i];
+			default: return String.valueOf(ints[i]);
+		}
+	}
+
+	/** Returns the given fields in the "name,value;name,value" form that Entity.update(String) reads. */
+	public String toUpdateString(long mask) {
+		StringBuilder str = new StringBuilder();
+		for(int i = 0; i < count; i++) {
+			if((mask & 1L << i) == 0) continue;
+			if(str.length() > 0) str.append(";");
+			str.append(names[i]).append(",").append(getText(i));
+		}
+		return str.toString();
+	}
+
+	/** Writes the mask, then the type and value of each field in it. Entity.update(ByteBuffer) reads this back. */
+	public void write(DataOutput out, long mask) throws IOException {
+		out.writeLong(mask);
+		for(int i = 0; i < count; i++) {
+			if((mask & 1L << i) == 0) continue;
+			out.writeByte(types[i]);
+			switch(types[i]) {
+				case TYPE_INT: out.writeInt(ints[i]); break;
+				case TYPE_BOOLEAN: out.writeByte(ints[i]); break;
+				case TYPE_STRING:
+					byte[] bytes = strings[i] == null ? new byte[0] : strings[i].getBytes(StandardCharsets.UTF_8);
+					out.writeInt(bytes.length);
+					out.write(bytes);
+					break;
+			}
+		}
+	}
+
+	/// reads one value written by write(), as the text that updateField() expects.
+	static String readText(ByteBuffer in) {
+		byte type = in.get();
+		switch(type) {
+			case TYPE_INT: return String.valueOf(in.getInt());
+			case TYPE_BOOLEAN: return String.valueOf(in.get() == 1);
+			case TYPE_STRING:
+				int length = in.getInt();
+				String val = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+				in.position(in.position() + length);
+				return val;
+			default: throw new IllegalArgumentException("unknown entity field type " + type);
+		}
+	}
+}
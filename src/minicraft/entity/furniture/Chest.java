@@ -6,6 +6,7 @@ import java.util.List;
 
 import minicraft.core.FileHandler;
 import minicraft.core.Game;
+import minicraft.entity.EntityFields;
 import minicraft.entity.ItemHolder;
 import minicraft.entity.mob.Player;
 import minicraft.gfx.Color;
@@ -67,10 +68,9 @@ public class Chest extends Furniture implements ItemHolder {
 	}
 	
 	@Override
-	protected String getUpdateString() {
-		String updates = super.getUpdateString()+";";
-		updates += "inventory,"+inventory.getItemData();
-		return updates;
+	protected void writeFields(EntityFields fields) {
+		super.writeFields(fields);
+		fields.put("inventory", inventory.getItemData());
 	}
 	
 	@Override
@@ -4,6 +4,7 @@ import minicraft.core.Game;
 import minicraft.core.Updater;
 import minicraft.core.io.Settings;
 import minicraft.entity.Entity;
+import minicraft.entity.EntityFields;
 import minicraft.entity.mob.Player;
 import minicraft.gfx.Color;
 import minicraft.gfx.Font;
@@ -100,11 +101,9 @@ public class DeathChest extends Chest {
 		}
 	}
 	
-	protected String getUpdateString() {
-		String updates = super.getUpdateString() + ";";
-		updates += "time,"+time;
-		
-		return updates;
+	protected void writeFields(EntityFields fields) {
+		super.writeFields(fields);
+		fields.put("time", time);
 	}
 	
 	@Override
@@ -6,6 +6,7 @@ import minicraft.core.Game;
 import minicraft.core.Updater;
 import minicraft.core.World;
 import minicraft.entity.Entity;
+import minicraft.entity.EntityFields;
 import minicraft.entity.mob.AirWizard;
 import minicraft.entity.mob.Player;
 import minicraft.entity.particle.SmashParticle;
@@ -134,11 +135,9 @@ public class DungeonChest extends Chest {
 	}
 	
 	@Override
-	protected String getUpdateString() {
-		String updates = super.getUpdateString() + ";";
-		updates += "isLocked,"+isLocked;
-		
-		return updates;
+	protected void writeFields(EntityFields fields) {
+		super.writeFields(fields);
+		fields.put("isLocked", isLocked);
 	}
 	
 	@Override
@@ -3,6 +3,7 @@ package minicraft.entity.furniture;
 import minicraft.core.Game;
 import minicraft.entity.Direction;
 import minicraft.entity.Entity;
+import minicraft.entity.EntityFields;
 import minicraft.entity.mob.Player;
 import minicraft.entity.mob.RemotePlayer;
 import minicraft.gfx.Screen;
@@ -119,9 +120,9 @@ public class Furniture extends Entity {
 	public boolean canWool() { return true; }
 	
 	@Override
-	protected String getUpdateString() {
-		return super.getUpdateString()+
-		";pushTime,"+multiPushTime;
+	protected void writeFields(EntityFields fields) {
+		super.writeFields(fields);
+		fields.put("pushTime", multiPushTime);
 	}
 	
 	@Override
@@ -6,6 +6,7 @@ import java.util.Random;
 import minicraft.core.Game;
 import minicraft.core.io.Sound;
 import minicraft.entity.Direction;
+import minicraft.entity.EntityFields;
 import minicraft.entity.mob.EnemyMob;
 import minicraft.entity.mob.MobAi;
 import minicraft.entity.mob.Player;
@@ -211,12 +212,10 @@ public class Spawner extends Furniture {
 	public Furniture clone() { return new Spawner(mob); }
 	
 	@Override
-	protected String getUpdateString() {
-		String updates = super.getUpdateString() + ";";
-		updates += "health,"+health+
-		";lvl,"+lvl;
-		
-		return updates;
+	protected void writeFields(EntityFields fields) {
+		super.writeFields(fields);
+		fields.put("health", health);
+		fields.put("lvl", lvl);
 	}
 	
 	@Override
@@ -9,6 +9,7 @@ import java.util.List;
 import minicraft.core.io.Sound;
 import minicraft.entity.Direction;
 import minicraft.entity.Entity;
+import minicraft.entity.EntityFields;
 import minicraft.entity.mob.Mob;
 import minicraft.entity.mob.Player;
 import minicraft.gfx.Color;
@@ -119,12 +120,10 @@ public class Tnt extends Furniture implements ActionListener {
 	}
 	
 	@Override
-	protected String getUpdateString() {
-		String updates = super.getUpdateString() + ";";
-		updates += "fuseLit,"+fuseLit+
-		";ftik,"+ftik;
-		
-		return updates;
+	protected void writeFields(EntityFields fields) {
+		super.writeFields(fields);
+		fields.put("fuseLit", fuseLit);
+		fields.put("ftik", ftik);
 	}
 	
 	@Override
@@ -6,6 +6,7 @@ import minicraft.core.io.Settings;
 import minicraft.core.io.Sound;
 import minicraft.entity.Direction;
 import minicraft.entity.Entity;
+import minicraft.entity.EntityFields;
 import minicraft.entity.furniture.Spawner;
 import minicraft.gfx.Color;
 import minicraft.gfx.MobSprite;
@@ -169,12 +170,10 @@ public class Creeper extends EnemyMob {
 	}
 	
 	@Override
-	protected String getUpdateString() {
-		String updates = super.getUpdateString() + ";";
-		updates += "fuseTime,"+fuseTime+
-		";fuseLit,"+fuseLit;
-		
-		return updates;
+	protected void writeFields(EntityFields fields) {
+		super.writeFields(fields);
+		fields.put("fuseTime", fuseTime);
+		fields.put("fuseLit", fuseLit);
 	}
 	
 	@Override
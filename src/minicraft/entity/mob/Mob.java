@@ -5,6 +5,7 @@ import java.util.List;
 import minicraft.core.Game;
 import minicraft.entity.Direction;
 import minicraft.entity.Entity;
+import minicraft.entity.EntityFields;
 import minicraft.entity.furniture.Tnt;
 import minicraft.entity.particle.TextParticle;
 import minicraft.gfx.Color;
@@ -207,13 +208,11 @@ public abstract class Mob extends Entity {
 	}
 	
 	@Override
-	protected String getUpdateString() {
-		String updates = super.getUpdateString() + ";";
-		updates += "dir,"+dir.ordinal()+
-		";health,"+health+
-		";hurtTime,"+hurtTime;
-		
-		return updates;
+	protected void writeFields(EntityFields fields) {
+		super.writeFields(fields);
+		fields.put("dir", dir.ordinal());
+		fields.put("health", health);
+		fields.put("hurtTime", hurtTime);
 	}
 	
 	@Override
@@ -15,6 +15,7 @@ import minicraft.entity.Arrow;
 import minicraft.entity.ClientTickable;
 import minicraft.entity.Direction;
 import minicraft.entity.Entity;
+import minicraft.entity.EntityFields;
 import minicraft.entity.ItemEntity;
 import minicraft.entity.ItemHolder;
 import minicraft.entity.furniture.Bed;
@@ -1081,20 +1082,18 @@ public class Player extends Mob implements ItemHolder, ClientTickable {
 		super.remove();
 	}
 	
-	protected String getUpdateString() {
-		String updates = super.getUpdateString() + ";";
-		updates += "skinon,"+skinon+
-		";shirtColor,"+shirtColor+
-		";armor,"+armor+
-		";stamina,"+stamina+
-		";health,"+health+
-		";hunger,"+hunger+
-		";attackTime,"+attackTime+
-		";attackDir,"+attackDir.ordinal()+
-		";activeItem,"+(activeItem==null?"null": activeItem.getData())+
-		";isFishing,"+(isFishing==true?"1": "0");
-		
-		return updates;
+	protected void writeFields(EntityFields fields) {
+		super.writeFields(fields);
+		fields.put("skinon", skinon);
+		fields.put("shirtColor", shirtColor);
+		fields.put("armor", armor);
+		fields.put("stamina", stamina);
+		fields.put("health", health);
+		fields.put("hunger", hunger);
+		fields.put("attackTime", attackTime);
+		fields.put("attackDir", attackDir.ordinal());
+		fields.put("activeItem", activeItem==null?"null": activeItem.getData());
+		fields.put("isFishing", isFishing?1:0);
 	}
 	
 	@Override
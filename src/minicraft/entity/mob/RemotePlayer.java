@@ -21,9 +21,9 @@ import org.jetbrains.annotations.Nullable;
 public class RemotePlayer extends Player implements ClientTickable {
 	
 	/// these are used by the server to determine the distance limit for an entity/tile to be updated/added for a given player.
-	private static final int xSyncRadius = 12;
-	private static final int ySyncRadius = 10;
-	private static final int entityTrackingBuffer = 0;
+	public static final int xSyncRadius = 12;
+	public static final int ySyncRadius = 10;
+	public static final int entityTrackingBuffer = 0;
 	
 	private String username = "";
 	private InetAddress ipAddress;
@@ -3,6 +3,7 @@ package minicraft.entity.mob;
 import minicraft.core.Game;
 import minicraft.core.io.Settings;
 import minicraft.entity.Direction;
+import minicraft.entity.EntityFields;
 import minicraft.gfx.Color;
 import minicraft.gfx.MobSprite;
 import minicraft.gfx.Screen;
@@ -80,11 +81,9 @@ public class Slime extends EnemyMob {
 	}
 	
 	@Override
-	protected String getUpdateString() {
-		String updates = super.getUpdateString() + ";";
-		updates += "jumpTime,"+jumpTime;
-		
-		return updates;
+	protected void writeFields(EntityFields fields) {
+		super.writeFields(fields);
+		fields.put("jumpTime", jumpTime);
 	}
 	
 	@Override
@@ -0,0 +1,204 @@
+package minicraft.gfx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import minicraft.core.MyUtils;
+
+/**
+ * The draws that make up a frame, recorded by a Screen so that another thread can make them later, on a screen of its own.
+ * Everything a draw needs is copied into the list, except blocks of pixels that never change once made, which are kept as they are.
+ * Once recorded, a list isn't changed until it is reset, so the game can go on while it is drawn.
+ *
+ * The frame is drawn partway between the tick it was recorded at and the one before it. Draws in the level move with the camera,
+ * and the draws of an entity also move from where the entity was at the last tick to where it is now.
+ */
+public class DrawList {
+
+	/// how far outside of the screen draws are still recorded, in pixels; the camera doesn't move further than this between ticks.
+	public static final int MARGIN = 16;
+
+	private static final int CLEAR = 0, SPRITE = 1, PIXELS = 2, CACHED_PIXELS = 3, OVERLAY = 4, FILL = 5;
+	private static final int ON_SCREEN = -1; // the motion of draws that stay where they are on the screen, like the GUI.
+
+	private int[] ops = new int[4096]; // each draw: its type, its motion, then its arguments.
+	private int opCount = 0;
+	private int[] data = new int[Screen.w * Screen.h]; // pixels copied for the draws.
+	private int dataCount = 0;
+	private final ArrayList<int[]> blocks = new ArrayList<>(); // the blocks of pixels that are kept instead of copied.
+
+	private int[] motions = new int[64]; // from x, from y, to x, to y, of each thing moving in the level; the first one doesn't move.
+	private int motionCount = 1;
+	private int motion = ON_SCREEN;
+
+	// the scroll of the level at the last tick and at this one, before it is kept within 0 and the max.
+	private int cameraFromX, cameraFromY, cameraToX, cameraToY, cameraMaxX, cameraMaxY;
+
+	private long time = 0, tickLength = 1; // when the frame was recorded, and how long until the next tick.
+
+	private Screen lightScreen = null; // the light of an overlay, moved with the camera.
+
+	/** Empties the list, so that a new frame can be recorded into it. */
+	public void reset() {
+		opCount = 0;
+		dataCount = 0;
+		blocks.clear();
+		motionCount = 1;
+		motion = ON_SCREEN;
+		cameraFromX = cameraFromY = cameraToX = cameraToY = cameraMaxX = cameraMaxY = 0;
+	}
+
+	/** Sets the scroll of the level, at the last tick and now; it is kept between 0 and the given max when the frame is drawn. */
+	public void setCamera(int fromX, int fromY, int toX, int toY, int maxX, int maxY) {
+		cameraFromX = fromX;
+		cameraFromY = fromY;
+		cameraToX = toX;
+		cameraToY = toY;
+		cameraMaxX = maxX;
+		cameraMaxY = maxY;
+	}
+
+	/** Sets when the frame was recorded, and how long the tick it was recorded at lasts. */
+	public void setTime(long time, long tickLength) {
+		this.time = time;
+		this.tickLength = Math.max(1, tickLength);
+	}
+
+	public boolean isNewerThan(DrawList other) { return time > other.time; }
+
+	/** Returns how far (0 to 1) the game is, at the given time, between the tick before this frame and the next one. */
+	public float getPartialTick(long now) {
+		return Math.max(0, Math.min(1, (now - time) / (float) tickLength));
+	}
+
+	/// the draws after this move from the first position at the last tick to the second one now, along with the camera.
+	void setMotion(int fromX, int fromY, int toX, int toY) {
+		if(fromX == toX && fromY == toY) {
+			motion = 0;
+			return;
+		}
+
+		if(motionCount * 4 == motions.length)
+			motions = Arrays.copyOf(motions, motions.length * 2);
+		int i = motionCount * 4;
+		motions[i] = fromX;
+		motions[i + 1] = fromY;
+		motions[i + 2] = toX;
+		motions[i + 3] = toY;
+		motion = motionCount++;
+	}
+
+	/// the draws after this stay where they are on the screen.
+	void clearMotion() { motion = ON_SCREEN; }
+
+	/// whether a draw of the given size, at the given place on the screen, can be seen in a frame.
+	boolean isVisible(int xp, int yp, int w, int h) {
+		int margin = motion == ON_SCREEN ? 0 : MARGIN;
+		return xp + w > -margin && yp + h > -margin && xp < Screen.w + margin && yp < Screen.h + margin;
+	}
+
+	void clear(int color) {
+		add(CLEAR, color);
+	}
+
+	void sprite(int xp, int yp, int tile, int bits, int sheet, int whiteTint, boolean fullbright) {
+		add(SPRITE, xp, yp, tile, bits, sheet, whiteTint, fullbright ? 1 : 0);
+	}
+
+	void pixels(int xp, int yp, int[] block, int bw) {
+		add(PIXELS, xp, yp, bw, copy(block), block.length);
+	}
+
+	void cachedPixels(int xp, int yp, int[] block, int bw, boolean opaque) {
+		blocks.add(block);
+		add(CACHED_PIXELS, xp, yp, bw, blocks.size() - 1, opaque ? 1 : 0);
+	}
+
+	void overlay(int[] light, boolean caves, int tint, int xa, int ya) {
+		add(OVERLAY, copy(light), caves ? 1 : 0, tint, xa, ya);
+	}
+
+	void fill(int[] pixelColors) {
+		add(FILL, copy(pixelColors), Math.min(pixelColors.length, Screen.w * Screen.h));
+	}
+
+	private int copy(int[] pixels) {
+		if(dataCount + pixels.length > data.length)
+			data = Arrays.copyOf(data, Math.max(data.length * 2, dataCount + pixels.length));
+		System.arraycopy(pixels, 0, data, dataCount, pixels.length);
+		dataCount += pixels.length;
+		return dataCount - pixels.length;
+	}
+
+	private void add(int type, int... args) {
+		if(opCount + 2 + args.length > ops.length)
+			ops = Arrays.copyOf(ops, ops.length * 2);
+		ops[opCount++] = type;
+		ops[opCount++] = motion;
+		System.arraycopy(args, 0, ops, opCount, args.length);
+		opCount += args.length;
+	}
+
+	/** Makes the draws on the given screen, which should have no offset, partway between the last tick and the one the frame was recorded at. */
+	public void draw(Screen screen, float partialTick) {
+		// the camera, and each thing in the level, are drawn where they were this far into the tick; see Entity.getRenderX().
+		int cameraX = MyUtils.clamp(cameraToX, 0, cameraMaxX) - MyUtils.clamp(interpolate(cameraFromX, cameraToX, partialTick), 0, cameraMaxX);
+		int cameraY = MyUtils.clamp(cameraToY, 0, cameraMaxY) - MyUtils.clamp(interpolate(cameraFromY, cameraToY, partialTick), 0, cameraMaxY);
+
+		int i = 0;
+		while(i < opCount) {
+			int type = ops[i++];
+			int m = ops[i++];
+			int xs = 0, ys = 0;
+			if(m != ON_SCREEN) {
+				xs = cameraX + interpolate(motions[m * 4], motions[m * 4 + 2], partialTick) - motions[m * 4 + 2];
+				ys = cameraY + interpolate(motions[m * 4 + 1], motions[m * 4 + 3], partialTick) - motions[m * 4 + 3];
+			}
+
+			switch(type) {
+				case CLEAR:
+					screen.clear(ops[i++]);
+					break;
+				case SPRITE:
+					screen.render(ops[i] + xs, ops[i + 1] + ys, ops[i + 2], ops[i + 3], ops[i + 4], ops[i + 5], ops[i + 6] != 0);
+					i += 7;
+					break;
+				case PIXELS:
+					screen.renderPixels(ops[i] + xs, ops[i + 1] + ys, data, ops[i + 3], ops[i + 4], ops[i + 2], false);
+					i += 5;
+					break;
+				case CACHED_PIXELS:
+					int[] block = blocks.get(ops[i + 3]);
+					screen.renderPixels(ops[i] + xs, ops[i + 1] + ys, block, 0, block.length, ops[i + 2], ops[i + 4] != 0);
+					i += 5;
+					break;
+				case OVERLAY:
+					screen.overlay(moveLight(screen, ops[i], xs, ys), ops[i + 1] != 0, ops[i + 2], ops[i + 3] - xs, ops[i + 4] - ys);
+					i += 5;
+					break;
+				case FILL:
+					System.arraycopy(data, ops[i], screen.pixels, 0, Math.min(ops[i + 1], screen.pixels.length));
+					i += 2;
+					break;
+			}
+		}
+	}
+
+	/// the light recorded at the given place in the data, moved by the camera; the light at the edge is stretched over what wasn't recorded.
+	private int[] moveLight(Screen model, int start, int xs, int ys) {
+		if(lightScreen == null)
+			lightScreen = new Screen(model, Screen.w, Screen.h);
+		int[] light = lightScreen.pixels;
+		for(int y = 0; y < Screen.h; y++) {
+			int src = start + MyUtils.clamp(y - ys, 0, Screen.h - 1) * Screen.w;
+			for(int x = 0; x < Screen.w; x++)
+				light[x + y * Screen.w] = data[src + MyUtils.clamp(x - xs, 0, Screen.w - 1)];
+		}
+		return light;
+	}
+
+	/// where something is, the given part of the way from one tick to the next; the same as Entity.getRenderX().
+	private static int interpolate(int from, int to, float partialTick) {
+		return from + Math.round((to - from) * partialTick);
+	}
+}
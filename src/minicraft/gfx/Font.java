@@ -2,47 +2,104 @@ package minicraft.gfx;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import minicraft.core.io.Localization;
 
 public class Font {
 	// These are all the characters that will be translated to the screen. (The spaces are important)
-	private static String chars =
+	private static final String chars =
 			"ABCDEFGHIJKLMNOPQRSTUVWXYZ012345"+
 			"6789.,!?'\"-+=/\\%()<>:;^@ÁÉÍÓÚÑ¿¡"+
 			"ÃÊÇÔÕĞÇÜİÖŞÆØÅ";
 	
 	/* The order of the letters in the chars string is represented in the order that they appear in the sprite-sheet. */
-
+	
+	private static final int[] glyphs; // the position of each character in chars, by character; -1 for the ones that can't be drawn.
+	static {
+		int max = 0;
+		for (int i = 0; i < chars.length(); i++)
+			max = Math.max(max, chars.charAt(i));
+		glyphs = new int[max + 1];
+		Arrays.fill(glyphs, -1);
+		for (int i = chars.length() - 1; i >= 0; i--)
+			glyphs[chars.charAt(i)] = i; // the first one wins, like chars.indexOf().
+	}
+	
+	private static int getGlyph(char c) { return c < glyphs.length ? glyphs[c] : -1; }
+	
+	/// the most strings and paragraphs that are kept drawn or split into lines; the ones used least recently go first.
+	private static final int MAX_CACHED = 256;
+	private static final int[] NOT_DRAWN = new int[0]; // marks strings that have been seen once; a string is only drawn beforehand the second time, so ones that keep changing don't cost extra.
+	private static final Map<Key, int[]> strings = new Cache<>();
+	private static final Map<Key, String[]> paragraphs = new Cache<>();
+	
+	// the drawn strings are thrown out if any of these change. Screens that draw into their own pixels share their sheets with the main screen, so drawing to them keeps the cache.
+	private static SpriteSheet fontSheet = null;
+	private static Locale locale = null;
+	
 	public static void draw(String msg, Screen screen, int x, int y) { draw(msg, screen, x, y, -1); }
 
 	/** Draws the message to the x & y coordinates on the screen. */
-	public static void draw(String msg, Screen screen, int x, int y, int whiteTint) {
-		msg = msg.toUpperCase(Localization.getSelectedLocale()); //makes all letters uppercase.
-		for (int i = 0; i < msg.length(); i++) { // Loops through all the characters that you typed
-			int ix = chars.indexOf(msg.charAt(i)); // the current letter in the message loop
-			if (ix >= 0) {
-				// if that character's position is larger than or equal to 0, then render the character on the screen.
-				screen.render(x + i * textWidth(msg.substring(i, i+1)), y, ix + 28 * 32, 0, 3, whiteTint);
-			}
-		}
-	}
+	public static void draw(String msg, Screen screen, int x, int y, int whiteTint) { draw(msg, screen, x, y, whiteTint, false); }
 
 	public static void drawBackground(String msg, Screen screen, int x, int y) { drawBackground(msg, screen, x, y, -1); }
 
-	public static void drawBackground(String msg, Screen screen, int x, int y, int whiteTint) {
-		msg = msg.toUpperCase(Localization.getSelectedLocale());
-		for (int i = 0; i < msg.length(); i++) {
-			int ix = chars.indexOf(msg.charAt(i));
+	public static void drawBackground(String msg, Screen screen, int x, int y, int whiteTint) { draw(msg, screen, x, y, whiteTint, true); }
+	
+	/// draws the string from the cache if it has been drawn before, and puts it in the cache otherwise.
+	private static void draw(String msg, Screen screen, int x, int y, int whiteTint, boolean background) {
+		int[] pixels;
+		synchronized (strings) {
+			checkValid(screen);
+			Key key = new Key(msg, whiteTint, background ? 1 : 0, 0, 0);
+			pixels = strings.get(key);
+			if (pixels == null) {
+				strings.put(key, NOT_DRAWN);
+				pixels = NOT_DRAWN;
+			}
+			else if (pixels == NOT_DRAWN) {
+				String upper = msg.toUpperCase(locale);
+				if (upper.length() > 0) {
+					Screen block = new Screen(screen, textWidth(upper), textHeight());
+					Arrays.fill(block.pixels, -1); // transparent
+					drawGlyphs(upper, block, 0, 0, whiteTint, background);
+					pixels = block.pixels;
+					strings.put(key, pixels);
+				}
+			}
+		}
+		
+		if (pixels != NOT_DRAWN)
+			screen.renderPixels(x, y, pixels, pixels.length / textHeight());
+		else
+			drawGlyphs(msg.toUpperCase(Localization.getSelectedLocale()), screen, x, y, whiteTint, background); //makes all letters uppercase.
+	}
+	
+	private static void drawGlyphs(String msg, Screen screen, int x, int y, int whiteTint, boolean background) {
+		for (int i = 0; i < msg.length(); i++) { // Loops through all the characters that you typed
+			int ix = getGlyph(msg.charAt(i)); // the current letter in the message loop
 			if (ix >= 0) {
-				// render the black background
-				screen.render(x + i * textWidth(msg.substring(i, i+1)), y, 30 + 30 * 32, 0, 3);
-
-				screen.render(x + i * textWidth(msg.substring(i, i+1)), y, ix + 28 * 32, 0, 3, whiteTint);
+				// if that character's position is larger than or equal to 0, then render the character on the screen.
+				if (background)
+					screen.render(x + i * 8, y, 30 + 30 * 32, 0, 3); // render the black background
+				screen.render(x + i * 8, y, ix + 28 * 32, 0, 3, whiteTint);
 			}
 		}
 	}
+	
+	private static void checkValid(Screen screen) {
+		SpriteSheet sheet = screen.getSheet(3); // the glyphs are on the gui sheet.
+		if (sheet == fontSheet && Localization.getSelectedLocale().equals(locale))
+			return;
+		
+		fontSheet = sheet;
+		locale = Localization.getSelectedLocale();
+		strings.clear();
+	}
 
 	public static int textWidth(String text) { return text.length() * 8; }
 	public static int textWidth(String[] para) {
@@ -83,6 +140,22 @@ public class Font {
 	
 	public static String[] getLines(String para, int w, int h, int lineSpacing) { return getLines(para, w, h, lineSpacing, false); }
 	public static String[] getLines(String para, int w, int h, int lineSpacing, boolean keepEmptyRemainder) {
+		Key key = new Key(para, w, h, lineSpacing, keepEmptyRemainder ? 1 : 0);
+		String[] lines;
+		synchronized (paragraphs) {
+			lines = paragraphs.get(key);
+		}
+		if (lines == null) {
+			lines = splitLines(para, w, h, lineSpacing, keepEmptyRemainder);
+			synchronized (paragraphs) {
+				paragraphs.put(key, lines);
+			}
+		}
+		
+		return lines.clone(); // in case the caller changes it.
+	}
+	
+	private static String[] splitLines(String para, int w, int h, int lineSpacing, boolean keepEmptyRemainder) {
 		ArrayList<String> lines = new ArrayList<>();
 		
 		// So, I have a paragraph. I give it to getLine, and it returns an index. Cut the string at that index, and add it to the lines list.
@@ -144,4 +217,37 @@ public class Font {
 		String line = String.join(" ", Arrays.copyOfRange(words, 0, i));
 		return line.length();
 	}
+	
+	/// a string, and the numbers it was drawn or split into lines with.
+	private static final class Key {
+		private final String text;
+		private final int a, b, c, d;
+		
+		Key(String text, int a, int b, int c, int d) {
+			this.text = text;
+			this.a = a;
+			this.b = b;
+			this.c = c;
+			this.d = d;
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) return false;
+			Key key = (Key) other;
+			return text.equals(key.text) && a == key.a && b == key.b && c == key.c && d == key.d;
+		}
+		
+		@Override
+		public int hashCode() { return (((text.hashCode() * 31 + a) * 31 + b) * 31 + c) * 31 + d; }
+	}
+	
+	private static final class Cache<V> extends LinkedHashMap<Key, V> {
+		private static final long serialVersionUID = 1L;
+		
+		Cache() { super(16, 0.75f, true); } // ordered by last use.
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) { return size() > MAX_CACHED; }
+	}
 }
@@ -1,8 +1,10 @@
 package minicraft.gfx;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 import minicraft.core.Renderer;
 import minicraft.core.Updater;
-import minicraft.core.io.Settings;
 
 public class Screen {
 	
@@ -21,6 +23,7 @@ public class Screen {
 	private static final int BIT_MIRROR_Y = 0x02; // binary: 10
 	
 	public int[] pixels; // pixels on the screen
+	private final int width, height; // the size of the pixels array; the screen size, unless this screen draws into something else.
 
 	// DEPRECATED!!!! for backwards compatibility during porting
 	private SpriteSheet sheet; // the sprite sheet used in the Game.
@@ -30,7 +33,14 @@ public class Screen {
 	// and 3072 the start of the gui sheet
 
 	private SpriteSheet[] sheets;
-	private SpriteSheet[] sheetsCustom;
+	private SpriteSheet[] sheetsCustom; // the sheets to use with custom textures; the original sheet where there is no custom one.
+	
+	private static volatile boolean customTextures = false; // kept up to date by the "textures" setting, so it doesn't have to be looked up for every sprite.
+	
+	private DrawList recording = null; // while set, draws are added to this instead of being made.
+	
+	public static void setCustomTextures(boolean custom) { customTextures = custom; }
+	public static boolean usesCustomTextures() { return customTextures; }
 	
 	public Screen(SpriteSheet sheet) {
 		this(sheet, sheet, sheet, sheet);
@@ -40,8 +50,11 @@ public class Screen {
 	public Screen(SpriteSheet itemSheet, SpriteSheet tileSheet, SpriteSheet entitySheet, SpriteSheet guiSheet) {
 
 		sheets = new SpriteSheet[]{itemSheet, tileSheet, entitySheet, guiSheet};
+		sheetsCustom = sheets;
 
 		/// screen width and height are determined by the actual game window size, meaning the screen is only as big as the window.
+		width = Screen.w;
+		height = Screen.h;
 		pixels = new int[Screen.w * Screen.h]; // makes new integer array for all the pixels on the screen.
 	}
 
@@ -50,19 +63,57 @@ public class Screen {
 		this(itemSheet, tileSheet, entitySheet, guiSheet);
 
 		sheetsCustom = new SpriteSheet[]{itemSheetCustom, tileSheetCustom, entitySheetCustom, guiSheetCustom};
+		for (int i = 0; i < sheetsCustom.length; i++)
+			if (sheetsCustom[i] == null) sheetsCustom[i] = sheets[i]; // make it custom unless the custom sheet isn't working
 	}
 	
 	public Screen(Screen model) {
 		this(model.sheets[0], model.sheets[1], model.sheets[2], model.sheets[3]);
 	}
 	
+	/** Makes a screen that draws into its own width x height pixels, with the same sprite sheets (custom ones included) as the given screen. */
+	public Screen(Screen model, int width, int height) {
+		sheets = model.sheets;
+		sheetsCustom = model.sheetsCustom;
+		this.width = width;
+		this.height = height;
+		pixels = new int[width * height];
+	}
+	
+	/** The sprite sheet that sprites from the given sheet index are currently drawn from; this depends on whether custom textures are on. */
+	SpriteSheet getSheet(int sheet) { return customTextures ? sheetsCustom[sheet] : sheets[sheet]; }
+	
+	/** Adds the draws made after this to the given list instead of making them, until this is called with null. */
+	public void record(DrawList list) { recording = list; }
+	
+	/**
+	 * While recording, makes the draws after this part of the level, moving from the first position at the last tick to the second one now,
+	 * for the frame to be drawn partway between the two. Things that don't move give the same position twice.
+	 */
+	public void setMotion(int fromX, int fromY, int toX, int toY) {
+		if (recording != null) recording.setMotion(fromX, fromY, toX, toY);
+	}
+	
+	/** While recording, makes the draws after this stay where they are on the screen, like the GUI does. */
+	public void clearMotion() {
+		if (recording != null) recording.clearMotion();
+	}
+	
 	/** Clears all the colors on the screen */
 	public void clear(int color) {
+		if (recording != null) {
+			recording.clear(color);
+			return;
+		}
 		for (int i = 0; i < pixels.length; i++)
 			pixels[i] = color; // turns each pixel into a single color (clearing the screen!)
 	}
 	
 	public void render(int[] pixelColors) {
+		if (recording != null) {
+			recording.fill(pixelColors);
+			return;
+		}
 		System.arraycopy(pixelColors, 0, pixels, 0, Math.min(pixelColors.length, pixels.length));
 	}
 
@@ -77,55 +128,126 @@ public class Screen {
         // xp and yp are originally in level coordinates, but offset turns them to screen coordinates.
         xp -= xOffset; //account for screen offset
         yp -= yOffset;
+		
+		if (recording != null) {
+			if (recording.isVisible(xp, yp, 8, 8))
+				recording.sprite(xp, yp, tile, bits, sheet, whiteTint, fullbright);
+			return;
+		}
+		
+		// the part of the 8x8 box that is on the screen; the loops below don't check the bounds of each pixel.
+		int x0 = Math.max(0, -xp), x1 = Math.min(8, width - xp);
+		int y0 = Math.max(0, -yp), y1 = Math.min(8, height - yp);
+		if (x0 >= x1 || y0 >= y1) return;
+		
         // determines if the image should be mirrored...
         boolean mirrorX = (bits & BIT_MIRROR_X) > 0; // horizontally.
         boolean mirrorY = (bits & BIT_MIRROR_Y) > 0; // vertically.
 
-
-		SpriteSheet currentSheet;
-		if (Settings.get("textures").equals("Custom")) {
-			// make it custom unless the custom sheet isn't working
-			currentSheet = sheetsCustom[sheet] != null ? sheetsCustom[sheet] : sheets[sheet];
-		} else {
-			currentSheet = sheets[sheet];
-		}
+		SpriteSheet currentSheet = customTextures ? sheetsCustom[sheet] : sheets[sheet];
 
         int xTile = tile % 32; // gets x position of the spritesheet "tile"
         int yTile = tile / 32; // gets y position
         int toffs = xTile * 8 + yTile * 8 * currentSheet.width; // Gets the offset of the sprite into the spritesheet pixel array, the 8's represent the size of the box. (8 by 8 pixel sprite boxes)
-
-        /// THIS LOOPS FOR EVERY LITTLE PIXEL
-        for (int y = 0; y < 8; y++) { // Loops 8 times (because of the height of the tile)
-            int ys = y; // current y pixel
-            if (mirrorY) ys = 7 - y; // Reverses the pixel for a mirroring effect
-            if (y + yp < 0 || y + yp >= h) continue; // If the pixel is out of bounds, then skip the rest of the loop.
-            for (int x = 0; x < 8; x++) { // Loops 8 times (because of the width of the tile)
-                if (x + xp < 0 || x + xp >= w) continue; // skip rest if out of bounds.
-
-                int xs = x; // current x pixel
-                if (mirrorX) xs = 7 - x; // Reverses the pixel for a mirroring effect
-
-                int col = currentSheet.pixels[toffs + xs + ys * currentSheet.width]; // Gets the color of the current pixel from the value stored in the sheet.
-
-                boolean isTransparent = (col >> 24 == 0);
-
-                if (!isTransparent) {
-                    if (whiteTint != -1 && col == 0x1FFFFFF) {
-                        // if this is white, write the whiteTint over it
-                        pixels[(x + xp) + (y + yp) * w] = Color.upgrade(whiteTint);
-                    } else {
-                        // Inserts the colors into the image
-                        if (fullbright) {
-                            pixels[(x + xp) + (y + yp) * w] = Color.WHITE;
-                        } else {
-							pixels[(x + xp) + (y + yp) * w] = Color.upgrade(col);
-						}
-                    }
-                }
-            }
-        }
+		
+		byte boxType = currentSheet.getBoxType(xTile, yTile);
+		if (boxType == SpriteSheet.BOX_EMPTY) return; // nothing to draw.
+		
+		int sheetWidth = currentSheet.width;
+		int[] sheetPixels = currentSheet.pixels; // these have the transparency bit
+		int[] sheetColors = currentSheet.colors; // these don't
+		
+		if (whiteTint == -1 && !fullbright) {
+			// the plain case, which is most sprites.
+			for (int y = y0; y < y1; y++) {
+				int ys = mirrorY ? 7 - y : y; // Reverses the pixel for a mirroring effect
+				int src = toffs + ys * sheetWidth;
+				int dst = xp + (y + yp) * width;
+				
+				if (boxType == SpriteSheet.BOX_OPAQUE) {
+					if (!mirrorX)
+						System.arraycopy(sheetColors, src + x0, pixels, dst + x0, x1 - x0);
+					else
+						for (int x = x0; x < x1; x++)
+							pixels[dst + x] = sheetColors[src + 7 - x];
+				} else if (!mirrorX) {
+					for (int x = x0; x < x1; x++)
+						if (sheetPixels[src + x] >> 24 != 0) // skips transparent pixels
+							pixels[dst + x] = sheetColors[src + x];
+				} else {
+					for (int x = x0; x < x1; x++)
+						if (sheetPixels[src + 7 - x] >> 24 != 0)
+							pixels[dst + x] = sheetColors[src + 7 - x];
+				}
+			}
+			return;
+		}
+		
+		// tinted or fullbright
+		int tint = Color.upgrade(whiteTint);
+		for (int y = y0; y < y1; y++) {
+			int ys = mirrorY ? 7 - y : y;
+			int src = toffs + ys * sheetWidth;
+			int dst = xp + (y + yp) * width;
+			for (int x = x0; x < x1; x++) {
+				int xs = mirrorX ? 7 - x : x;
+				int col = sheetPixels[src + xs]; // Gets the color of the current pixel from the value stored in the sheet.
+				if (col >> 24 == 0) continue; // transparent
+				
+				if (whiteTint != -1 && col == 0x1FFFFFF)
+					pixels[dst + x] = tint; // if this is white, write the whiteTint over it
+				else
+					pixels[dst + x] = fullbright ? Color.WHITE : sheetColors[src + xs];
+			}
+		}
     }
 	
+	/** Draws a block of pixels that is bw pixels wide, such as a string drawn beforehand, leaving out the transparent (negative) ones. */
+	public void renderPixels(int xp, int yp, int[] block, int bw) {
+		xp -= xOffset;
+		yp -= yOffset;
+		if (recording != null) {
+			if (recording.isVisible(xp, yp, bw, block.length / bw))
+				recording.pixels(xp, yp, block, bw);
+			return;
+		}
+		renderPixels(xp, yp, block, 0, block.length, bw, false);
+	}
+	
+	/**
+	 * Like renderPixels(), for a block that is never changed once made, such as a cached chunk of a level; a recording keeps the block itself instead of a copy.
+	 * An opaque block has no transparent pixels, so its rows are copied whole.
+	 */
+	public void renderCachedPixels(int xp, int yp, int[] block, int bw, boolean opaque) {
+		xp -= xOffset;
+		yp -= yOffset;
+		if (recording != null) {
+			if (recording.isVisible(xp, yp, bw, block.length / bw))
+				recording.cachedPixels(xp, yp, block, bw, opaque);
+			return;
+		}
+		renderPixels(xp, yp, block, 0, block.length, bw, opaque);
+	}
+	
+	/// draws the given part of an array as a block of pixels, at a place on the screen without the offset.
+	void renderPixels(int xp, int yp, int[] block, int start, int length, int bw, boolean opaque) {
+		int bh = length / bw;
+		
+		int x0 = Math.max(0, -xp), x1 = Math.min(bw, width - xp);
+		int y0 = Math.max(0, -yp), y1 = Math.min(bh, height - yp);
+		for (int y = y0; y < y1; y++) {
+			int src = start + y * bw, dst = xp + (y + yp) * width;
+			if (opaque) {
+				if (x0 < x1) System.arraycopy(block, src + x0, pixels, dst + x0, x1 - x0);
+				continue;
+			}
+			for (int x = x0; x < x1; x++) {
+				int col = block[src + x];
+				if (col >= 0) pixels[dst + x] = col;
+			}
+		}
+	}
+	
 	/** Sets the offset of the screen */
 	public void setOffset(int xOffset, int yOffset) {
 		// this is called in few places, one of which is level.renderBackground, right before all the tiles are rendered. The offset is determined by the Game class (this only place renderBackground is called), by using the screen's width and the player's position in the level.
@@ -142,12 +264,29 @@ public class Screen {
 		In the end, "every other every row", will need, for example in column 1, 15 light to be lit, then 0 light to be lit, then 12 light to be lit, then 3 light to be lit. So, the pixels of lower light levels will generally be lit every other pixel, while the brighter ones appear more often. The reason for the variance in values is to provide EVERY number between 0 and 15, so that all possible light levels (below 16) are represented fittingly with their own pattern of lit and not lit.
 		16 is the minimum pixel lighness required to ensure that the pixel will always remain lit.
 	*/
-	private int[] dither = new int[] {
+	private static final int[] dither = new int[] {
 		0, 8, 2, 10,
 		12, 4, 14, 6,
 		3, 11, 1, 9,
 		15, 7, 13, 5
 	};
+	// for light levels of 0 or more, light / 10 <= dither[i] is the same as light < ditherLimit[i], without the division.
+	private static final int[] ditherLimit = new int[16];
+	static {
+		for (int i = 0; i < ditherLimit.length; i++)
+			ditherLimit[i] = (dither[i] + 1) * 10;
+	}
+	
+	public static boolean parallelOverlay = false; // set with the --parallellighting argument; splits overlay() into bands of rows.
+	private static final int OVERLAY_BANDS = 4;
+	private static ForkJoinPool overlayPool = null;
+	
+	// overlay() tints each color channel through these; they are only remade when the tint changes.
+	private final int[] litTint = new int[256];
+	private final int[] darkTint = new int[256];
+	private int tintTablesFactor = Integer.MIN_VALUE;
+	
+	private static final int[][] falloff = new int[256][]; // light brightness by squared distance from the center, for each light radius; made as needed.
 	
 	/** Overlays the screen with pixels */
     public void overlay(Screen screen2, int currentLevel, int xa, int ya) {
@@ -167,28 +306,59 @@ public class Screen {
 		}
 		else if(currentLevel >= 5)
 			tintFactor = -MAXDARK;
-        
-		int[] oPixels = screen2.pixels;  // The Integer array of pixels to overlay the screen with.
-		int i = 0; // current pixel on the screen
-		for (int y = 0; y < h; y++) { // loop through height of screen
-            for (int x = 0; x < w; x++) { // loop through width of screen
-				if (oPixels[i] / 10 <= dither[((x + xa) & 3) + ((y + ya) & 3) * 4]) {
-                    /// the above if statement is simply comparing the light level stored in oPixels with the minimum light level stored in dither. if it is determined that the oPixels[i] is less than the minimum requirements, the pixel is considered "dark", and the below is executed...
-					if(currentLevel < 3) { // if in caves...
-                        /// in the caves, not being lit means being pitch black.
-						pixels[i] = 0;
-                    } else {
-						/// outside the caves, not being lit simply means being darker.
-						pixels[i] = Color.tintColor(pixels[i], (int)tintFactor); // darkens the color one shade.
-                    }
-                }
-				
-				// increase the tinting of all colors by 20.
-				pixels[i] = Color.tintColor(pixels[i], 20);
-                i++; // moves to the next pixel.
-            }
-        }
-    }
+		
+		if (recording != null) {
+			recording.overlay(screen2.pixels, currentLevel < 3, (int)tintFactor, xa, ya);
+			return;
+		}
+		overlay(screen2.pixels, currentLevel < 3, (int)tintFactor, xa, ya);
+	}
+	
+	/// overlays the screen with the given light, tinting it by the given amount.
+	void overlay(int[] oPixels, boolean caves, int tint, int xa, int ya) {
+		if (tint != tintTablesFactor) {
+			tintTablesFactor = tint;
+			for (int c = 0; c < 256; c++) {
+				litTint[c] = Math.min(255, c + 20); // all colors get 20 lighter
+				darkTint[c] = Math.min(255, Math.max(0, Math.min(255, c + tintTablesFactor)) + 20); // dark ones are tinted first.
+			}
+		}
+		
+		if (!parallelOverlay) {
+			overlayRows(oPixels, caves, xa, ya, 0, h);
+			return;
+		}
+		
+		if (overlayPool == null)
+			overlayPool = new ForkJoinPool(Math.max(1, Math.min(OVERLAY_BANDS, Runtime.getRuntime().availableProcessors())));
+		ForkJoinTask<?>[] bands = new ForkJoinTask<?>[OVERLAY_BANDS];
+		for (int b = 0; b < OVERLAY_BANDS; b++) {
+			int y0 = h * b / OVERLAY_BANDS, y1 = h * (b + 1) / OVERLAY_BANDS;
+			bands[b] = overlayPool.submit(() -> overlayRows(oPixels, caves, xa, ya, y0, y1));
+		}
+		for (ForkJoinTask<?> band: bands)
+			band.join();
+	}
+	
+	private void overlayRows(int[] oPixels, boolean caves, int xa, int ya, int y0, int y1) {
+		int[] lit = litTint, dark = darkTint;
+		int caveDark = lit[0] << 16 | lit[0] << 8 | lit[0]; // black, then made 20 lighter like everything else.
+		for (int y = y0; y < y1; y++) { // loop through height of screen
+			int i = y * w; // current pixel on the screen
+			int limitRow = ((y + ya) & 3) * 4;
+			for (int x = 0; x < w; x++, i++) { // loop through width of screen
+				int col = pixels[i];
+				if (oPixels[i] < ditherLimit[limitRow + ((x + xa) & 3)]) {
+					/// the light level stored in oPixels is below the minimum light level for this pixel, so it is "dark".
+					if (caves) col = caveDark; /// in the caves, not being lit means being pitch black.
+					else if (col >= 0) col = dark[col >> 16 & 0xFF] << 16 | dark[col >> 8 & 0xFF] << 8 | dark[col & 0xFF]; /// outside the caves, not being lit simply means being darker.
+				}
+				else if (col >= 0) // negative colors are "transparent", and aren't tinted.
+					col = lit[col >> 16 & 0xFF] << 16 | lit[col >> 8 & 0xFF] << 8 | lit[col & 0xFF];
+				pixels[i] = col;
+			}
+		}
+	}
 
 	public void renderLight(int x, int y, int r) {
 		//applies offsets:
@@ -205,21 +375,33 @@ public class Screen {
 		if (y0 < 0) y0 = 0;
 		if (x1 > w) x1 = w;
 		if (y1 > h) y1 = h;
+		if (x0 >= x1 || y0 >= y1) return;
 		
+		int rr = r * r;
+		int[] brightness = getFalloff(r); // brightness[dist] = 255 - dist * 255 / (r * r); dist is the squared distance.
 		for (int yy = y0; yy < y1; yy++) { // loop through each y position
 			int yd = yy - y; // get distance to the previous y position.
 			yd = yd * yd; // square that distance
-			for (int xx = x0; xx < x1; xx++) { // loop though each x pos
+			int i = x0 + yy * w;
+			for (int xx = x0; xx < x1; xx++, i++) { // loop though each x pos
 				int xd = xx - x; //get x delta
 				int dist = xd * xd + yd; //square x delta, then add the y delta, to get total distance.
 				
-				if (dist <= r * r) {
-					// if the distance from the center (x,y) is less or equal to the radius...
-					int br = 255 - dist * 255 / (r * r); // area where light will be rendered. // r*r is becuase dist is still x*x+y*y, of pythag theorem.
-					// br = brightness... literally. from 0 to 255.
-					if (pixels[xx + yy * w] < br) pixels[xx + yy * w] = br; // pixel cannot be smaller than br; in other words, the pixel color (brightness) cannot be less than br.
-				}
+				if (dist <= rr) // if the distance from the center (x,y) is less or equal to the radius...
+					pixels[i] = Math.max(pixels[i], brightness[dist]); // pixel cannot be smaller than the brightness.
 			}
 		}
 	}
+	
+	private static int[] getFalloff(int r) {
+		int[] table = r < falloff.length ? falloff[r] : null;
+		if (table != null) return table;
+		
+		table = new int[r * r + 1];
+		for (int dist = 0; dist < table.length; dist++)
+			table[dist] = 255 - dist * 255 / (r * r);
+		if (r < falloff.length)
+			falloff[r] = table; // a race here just makes the same table twice.
+		return table;
+	}
 }
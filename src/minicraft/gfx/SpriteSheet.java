@@ -6,8 +6,16 @@ public class SpriteSheet {
 	
 	public static final int boxWidth = 8;
 	
+	// what the pixels of each 8x8 box are like, so Screen can pick the fastest way to draw it.
+	static final byte BOX_EMPTY = 0; // all transparent
+	static final byte BOX_OPAQUE = 1; // none transparent
+	static final byte BOX_MIXED = 2;
+	
 	public int width, height; // width and height of the sprite sheet
 	public int[] pixels; // integer array of the image's pixels
+	final int[] colors; // the pixels as they are drawn on the screen; the transparency bit is cleared.
+	private final byte[] boxTypes;
+	private final int boxesPerRow;
 	
 	public SpriteSheet(BufferedImage image) {
 		//sets width and height to that of the image
@@ -42,5 +50,27 @@ public class SpriteSheet {
 			pixels[i] = (transparent << 24) + red + green + blue;
 
 		}
+		
+		colors = new int[pixels.length];
+		for (int i = 0; i < pixels.length; i++)
+			colors[i] = Color.upgrade(pixels[i]);
+		
+		boxesPerRow = width / boxWidth;
+		boxTypes = new byte[boxesPerRow * (height / boxWidth)];
+		for (int box = 0; box < boxTypes.length; box++) {
+			int offset = (box % boxesPerRow) * boxWidth + (box / boxesPerRow) * boxWidth * width;
+			int opaque = 0;
+			for (int y = 0; y < boxWidth; y++)
+				for (int x = 0; x < boxWidth; x++)
+					if (pixels[offset + x + y * width] >> 24 != 0) opaque++;
+			boxTypes[box] = opaque == 0 ? BOX_EMPTY : opaque == boxWidth * boxWidth ? BOX_OPAQUE : BOX_MIXED;
+		}
+	}
+	
+	/** Returns BOX_EMPTY, BOX_OPAQUE, or BOX_MIXED for the box at the given position, in boxes. Boxes outside the sheet count as mixed. */
+	byte getBoxType(int xBox, int yBox) {
+		int box = xBox + yBox * boxesPerRow;
+		if (xBox >= boxesPerRow || box < 0 || box >= boxTypes.length) return BOX_MIXED;
+		return boxTypes[box];
 	}
 }
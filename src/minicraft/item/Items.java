@@ -1,6 +1,9 @@
 package minicraft.item;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import minicraft.core.Network;
 
@@ -20,9 +23,14 @@ public class Items {
 		If you want to access one of those items, you do it through this class, by calling get("item name"); casing does not matter.
 	*/
 	private static ArrayList<Item> items = new ArrayList<>();
+	private static final Map<String, Item> names = new HashMap<>(); // the items above by upper case name; only changed while the class is loaded.
+	
+	private static final int MAX_KEYS = 4096; // the most item strings kept in keys; there are only so many names and counts, but a bad save file could have any number.
+	private static final Map<String, Key> keys = new ConcurrentHashMap<>(); // item strings already taken apart, as they were given to get().
 	
 	private static void add(Item i) {
 		items.add(i);
+		names.putIfAbsent(i.getName().toUpperCase(), i); // the first one with a name wins, like the list search used to.
 	}
 	private static void addAll(ArrayList<Item> items) {
 		for(Item i: items) add(i);
@@ -53,60 +61,63 @@ public class Items {
 	}
 	@Nullable
 	public static Item get(String name, boolean allowNull) {
-		name = name.toUpperCase();
-		//System.out.println("fetching name: \"" + name + "\"");
-		int data = 1;
-		boolean hadUnderscore = false;
-		if(name.contains("_")) {
-			hadUnderscore = true;
-			try {
-				data = Integer.parseInt(name.substring(name.indexOf("_")+1));
-			} catch(Exception ex) {
-				ex.printStackTrace();
-			}
-			name = name.substring(0, name.indexOf("_"));
-		}
-		else if(name.contains(";")) {
-			hadUnderscore = true;
-			try {
-				data = Integer.parseInt(name.substring(name.indexOf(";")+1));
-			} catch(Exception ex) {
-				ex.printStackTrace();
-			}
-			name = name.substring(0, name.indexOf(";"));
+		Key key = keys.get(name);
+		if(key == null) {
+			key = new Key(name);
+			if(keys.size() < MAX_KEYS)
+				keys.put(name, key);
 		}
 		
-		if(name.equalsIgnoreCase("NULL")) {
+		if(key.name.equals("NULL")) {
 			if(allowNull) return null;
 			else {
-				System.out.println("WARNING: Items.get passed argument \"null\" when null is not allowed; returning UnknownItem. StackTrace:");
-				Thread.dumpStack();
+				System.out.println("WARNING: Items.get passed argument \"null\" when null is not allowed; returning UnknownItem.");
 				return new UnknownItem("NULL");
 			}
 		}
 		
-		if(name.equals("UNKNOWN"))
+		if(key.name.equals("UNKNOWN"))
 			return new UnknownItem("BLANK");
 		
-		Item i = null;
-		for(Item cur: items) {
-			if(cur.getName().compareToIgnoreCase(name) == 0) {
-				i = cur;
-				break;
-			}
-		}
-		
-		if(i != null) {
-			i = i.clone();
+		if(key.item != null) {
+			Item i = key.item.clone();
 			if(i instanceof StackableItem)
-				((StackableItem)i).count = data;
-			if(i instanceof ToolItem && hadUnderscore)
-				((ToolItem)i).dur = data;
+				((StackableItem)i).count = key.data;
+			if(i instanceof ToolItem && key.hasData)
+				((ToolItem)i).dur = key.data;
 			return i;
 		} else {
-			System.out.println(Network.onlinePrefix()+"ITEMS GET: invalid name requested: \"" + name + "\"");
-			Thread.dumpStack();
-			return new UnknownItem(name);
+			System.out.println(Network.onlinePrefix()+"ITEMS GET: invalid name requested: \"" + key.name + "\"");
+			return new UnknownItem(key.name);
+		}
+	}
+	
+	/** An item string, like "Wood_32" or "Wood;32", taken apart into the item it names and the number after it. */
+	private static final class Key {
+		private final String name; // upper case, without the number.
+		@Nullable private final Item item; // the item in the list, to clone; null if there isn't one with the name.
+		private final int data;
+		private final boolean hasData;
+		
+		Key(String str) {
+			String name = str.toUpperCase();
+			int split = name.indexOf('_');
+			if(split < 0) split = name.indexOf(';');
+			
+			int data = 1;
+			if(split >= 0) {
+				try {
+					data = Integer.parseInt(name.substring(split + 1));
+				} catch(NumberFormatException ex) {
+					System.err.println("Items.get: invalid number in item \"" + str + "\"; using 1.");
+				}
+				name = name.substring(0, split);
+			}
+			
+			this.name = name;
+			item = names.get(name);
+			this.data = data;
+			hasData = split >= 0;
 		}
 	}
 	
@@ -0,0 +1,176 @@
+package minicraft.level;
+
+import java.util.Arrays;
+
+import minicraft.core.io.Settings;
+import minicraft.gfx.DrawList;
+import minicraft.gfx.Screen;
+import minicraft.level.tile.Tile;
+
+/**
+ * Keeps the pixels of a level's tiles, in chunks of CHUNK_SIZE x CHUNK_SIZE tiles, so that drawing the background
+ * is mostly copying rows of pixels onto the screen. A chunk is only drawn again when a tile in it, or next to it, changes.
+ * Animated tiles (water and lava) are left out of the chunks, and drawn over them every frame.
+ * A chunk is drawn into a new array each time, so that a recorded frame can keep using the old one.
+ */
+class BackgroundCache {
+
+	private static final int CHUNK_SHIFT = 3; // chunks are 8x8 tiles.
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_PIXELS = CHUNK_SIZE << 4;
+	private static final int TRANSPARENT = -1; // screen colors are never negative, so this marks pixels that no tile drew.
+	private static final int MAX_CHUNKS = 48; // a screen needs 20 chunks at most, with the margin of a recorded frame; the rest are kept in case the player comes back.
+	private static final int[] NONE = new int[0];
+
+	private final Level level;
+	private final int cw, ch;
+
+	private final int[][] chunks; // the pixels of each chunk; null if it isn't cached.
+	private final boolean[] dirty;
+	private final boolean[] opaque; // chunks without any TRANSPARENT pixels can be copied a whole row at once.
+	private final int[][] animated; // the positions (x + y * w) of the animated tiles in each chunk.
+	private final long[] lastUsed;
+	private int cachedCount = 0;
+	private long frame = 0;
+
+	// the cache is cleared if any of these change.
+	private Screen screen = null;
+	private Screen chunkScreen = null;
+	private Object textures = null;
+	private byte[] tiles = null, data = null;
+
+	BackgroundCache(Level level) {
+		this.level = level;
+		cw = (level.w + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+		ch = (level.h + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+		chunks = new int[cw * ch][];
+		dirty = new boolean[cw * ch];
+		opaque = new boolean[cw * ch];
+		animated = new int[cw * ch][];
+		lastUsed = new long[cw * ch];
+	}
+
+	/** Marks the chunks with tiles that may look different now that the tiles in the given area have changed. */
+	synchronized void invalidate(int x0, int y0, int x1, int y1) {
+		// connected tiles look at their neighbors, so the tiles around the area are included.
+		int cx0 = Math.max(0, (x0 - 1) >> CHUNK_SHIFT), cy0 = Math.max(0, (y0 - 1) >> CHUNK_SHIFT);
+		int cx1 = Math.min(cw - 1, (x1 + 1) >> CHUNK_SHIFT), cy1 = Math.min(ch - 1, (y1 + 1) >> CHUNK_SHIFT);
+		for(int cy = cy0; cy <= cy1; cy++)
+			for(int cx = cx0; cx <= cx1; cx++)
+				dirty[cx + cy * cw] = true;
+	}
+
+	private synchronized boolean takeDirty(int chunk) {
+		boolean wasDirty = dirty[chunk];
+		dirty[chunk] = false;
+		return wasDirty;
+	}
+
+	/**
+	 * Draws the part of the level at the given scroll onto the screen.
+	 * Returns false, without drawing anything, if that part is not entirely inside the chunks.
+	 */
+	boolean render(Screen screen, int xScroll, int yScroll) {
+		if(xScroll < 0 || yScroll < 0 || xScroll + Screen.w > cw * CHUNK_PIXELS || yScroll + Screen.h > ch * CHUNK_PIXELS)
+			return false;
+
+		checkValid(screen);
+		frame++;
+
+		// a recorded frame may be drawn with the camera a little way off, so the chunks just past the edges are included.
+		int cx0 = Math.max(0, xScroll - DrawList.MARGIN) / CHUNK_PIXELS, cx1 = Math.min(cw - 1, (xScroll + Screen.w - 1 + DrawList.MARGIN) / CHUNK_PIXELS);
+		int cy0 = Math.max(0, yScroll - DrawList.MARGIN) / CHUNK_PIXELS, cy1 = Math.min(ch - 1, (yScroll + Screen.h - 1 + DrawList.MARGIN) / CHUNK_PIXELS);
+
+		screen.setOffset(xScroll, yScroll);
+		for(int cy = cy0; cy <= cy1; cy++) {
+			for(int cx = cx0; cx <= cx1; cx++) {
+				int chunk = cx + cy * cw;
+				if(takeDirty(chunk) || chunks[chunk] == null)
+					draw(chunk);
+				lastUsed[chunk] = frame;
+
+				screen.renderCachedPixels(cx * CHUNK_PIXELS, cy * CHUNK_PIXELS, chunks[chunk], CHUNK_PIXELS, opaque[chunk]); // the screen leaves out the TRANSPARENT pixels.
+			}
+		}
+
+		for(int cy = cy0; cy <= cy1; cy++) {
+			for(int cx = cx0; cx <= cx1; cx++) {
+				for(int pos: animated[cx + cy * cw]) {
+					int x = pos % level.w, y = pos / level.w;
+					level.getTile(x, y).render(screen, level, x, y); // the screen clips the ones that are out of view.
+				}
+			}
+		}
+		screen.setOffset(0, 0);
+
+		if(cachedCount > MAX_CHUNKS)
+			evictOldest(cachedCount - MAX_CHUNKS);
+
+		return true;
+	}
+
+	private void checkValid(Screen screen) {
+		Object textures = Settings.get("textures");
+		if(screen == this.screen && textures.equals(this.textures) && level.tiles == tiles && level.data == data)
+			return;
+
+		if(screen != this.screen)
+			chunkScreen = new Screen(screen, CHUNK_PIXELS, CHUNK_PIXELS);
+		this.screen = screen;
+		this.textures = textures;
+		tiles = level.tiles;
+		data = level.data;
+
+		Arrays.fill(chunks, null);
+		Arrays.fill(animated, null);
+		cachedCount = 0;
+	}
+
+	private void draw(int chunk) {
+		if(chunks[chunk] == null)
+			cachedCount++;
+		int[] pixels = new int[CHUNK_PIXELS * CHUNK_PIXELS];
+		chunks[chunk] = pixels;
+		Arrays.fill(pixels, TRANSPARENT);
+
+		int x0 = (chunk % cw) << CHUNK_SHIFT, y0 = (chunk / cw) << CHUNK_SHIFT;
+		int[] moving = new int[CHUNK_SIZE * CHUNK_SIZE];
+		int movingCount = 0;
+
+		chunkScreen.pixels = pixels;
+		chunkScreen.setOffset(x0 << 4, y0 << 4);
+		for(int y = y0; y < y0 + CHUNK_SIZE; y++) {
+			for(int x = x0; x < x0 + CHUNK_SIZE; x++) {
+				Tile tile = level.getTile(x, y); // like renderBackground, this gives rock past the edges of the level.
+				if(tile.animated)
+					moving[movingCount++] = x + y * level.w;
+				else
+					tile.render(chunkScreen, level, x, y);
+			}
+		}
+		chunkScreen.setOffset(0, 0);
+
+		animated[chunk] = movingCount == 0 ? NONE : Arrays.copyOf(moving, movingCount);
+		opaque[chunk] = true;
+		for(int col: pixels) {
+			if(col == TRANSPARENT) {
+				opaque[chunk] = false;
+				break;
+			}
+		}
+	}
+
+	/// drops the chunks that have gone the longest without being drawn.
+	private void evictOldest(int count) {
+		for(int n = 0; n < count; n++) {
+			int oldest = -1;
+			for(int i = 0; i < chunks.length; i++)
+				if(chunks[i] != null && (oldest < 0 || lastUsed[i] < lastUsed[oldest]))
+					oldest = i;
+			if(oldest < 0) return;
+			chunks[oldest] = null;
+			animated[oldest] = null;
+			cachedCount--;
+		}
+	}
+}
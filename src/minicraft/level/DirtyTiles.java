@@ -0,0 +1,81 @@
+package minicraft.level;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of which tiles of a level have changed since they were last sent to clients.
+ * The level is split into CHUNK_SIZE x CHUNK_SIZE chunks, each with a bitset of its changed tiles,
+ * so collecting the changes only looks at the chunks that have any.
+ */
+public class DirtyTiles {
+
+	public static final int CHUNK_SHIFT = 4; // chunks are 16x16 tiles.
+	public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+	private static final int WORDS_PER_CHUNK = CHUNK_SIZE * CHUNK_SIZE / 64;
+	private static final int[] NONE = new int[0];
+
+	private final int w, h, cw;
+	private final long[] bits; // WORDS_PER_CHUNK longs for each chunk; one bit per tile, row by row.
+	private final int[] dirtyChunks; // the chunks with changed tiles, in the order they were first changed.
+	private int dirtyCount = 0, changeCount = 0;
+
+	public DirtyTiles(int w, int h) {
+		this.w = w;
+		this.h = h;
+		cw = (w + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+		int ch = (h + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+		bits = new long[cw * ch * WORDS_PER_CHUNK];
+		dirtyChunks = new int[cw * ch];
+	}
+
+	public synchronized void mark(int x, int y) {
+		if(x < 0 || y < 0 || x >= w || y >= h) return;
+
+		int chunk = (x >> CHUNK_SHIFT) + (y >> CHUNK_SHIFT) * cw;
+		int bit = (x & (CHUNK_SIZE - 1)) + ((y & (CHUNK_SIZE - 1)) << CHUNK_SHIFT);
+		int word = chunk * WORDS_PER_CHUNK + (bit >> 6);
+		long mask = 1L << bit;
+		if((bits[word] & mask) != 0) return; // already marked.
+
+		if(isClean(chunk))
+			dirtyChunks[dirtyCount++] = chunk;
+		bits[word] |= mask;
+		changeCount++;
+	}
+
+	private boolean isClean(int chunk) {
+		for(int i = chunk * WORDS_PER_CHUNK; i < (chunk + 1) * WORDS_PER_CHUNK; i++)
+			if(bits[i] != 0)
+				return false;
+		return true;
+	}
+
+	public synchronized boolean hasChanges() { return changeCount > 0; }
+
+	/** Returns the positions (x + y * w) of all the changed tiles, grouped by chunk, and marks them all clean again. */
+	public synchronized int[] drain() {
+		if(changeCount == 0) return NONE;
+
+		int[] changed = new int[changeCount];
+		int n = 0;
+		for(int i = 0; i < dirtyCount; i++) {
+			int chunk = dirtyChunks[i];
+			int x0 = (chunk % cw) << CHUNK_SHIFT;
+			int y0 = (chunk / cw) << CHUNK_SHIFT;
+			for(int word = 0; word < WORDS_PER_CHUNK; word++) {
+				long set = bits[chunk * WORDS_PER_CHUNK + word];
+				while(set != 0) {
+					int bit = (word << 6) + Long.numberOfTrailingZeros(set);
+					set &= set - 1;
+					changed[n++] = x0 + (bit & (CHUNK_SIZE - 1)) + (y0 + (bit >> CHUNK_SHIFT)) * w;
+				}
+			}
+			Arrays.fill(bits, chunk * WORDS_PER_CHUNK, (chunk + 1) * WORDS_PER_CHUNK, 0);
+		}
+
+		dirtyCount = 0;
+		changeCount = 0;
+		return changed;
+	}
+}
@@ -0,0 +1,132 @@
+package minicraft.level;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import minicraft.entity.Entity;
+import minicraft.gfx.Rectangle;
+
+/**
+ * A uniform grid over a level, used to look up the entities near a position without scanning every entity in the level.
+ * Each cell covers CELL_SIZE x CELL_SIZE tiles, and entities are filed under the cell that contains their center.
+ * The grid mirrors the level's entity set; Level keeps it up to date as entities are added, removed, and moved.
+ */
+public class EntityGrid {
+
+	public static final int CELL_SHIFT = 3; // cells are 8x8 tiles.
+	public static final int CELL_SIZE = 1 << CELL_SHIFT;
+
+	private static final int ENTITY_SHIFT = CELL_SHIFT + 4; // converts entity coordinates to cell coordinates.
+	private static final int MAX_ENTITY_RADIUS = 64; // entities are filed by their center, so rectangle queries are widened by this much (in entity coords) to catch the edges of larger entities.
+
+	private final int cw, ch; // width and height of the grid, in cells.
+	private final List<Entity>[] cells;
+	private final Map<Entity, Integer> filed = new IdentityHashMap<>(); // the cell each entity is currently filed under. Identity-based, because entity ids can change on clients.
+
+	public EntityGrid(int w, int h) {
+		cw = (w + CELL_SIZE - 1) >> CELL_SHIFT;
+		ch = (h + CELL_SIZE - 1) >> CELL_SHIFT;
+		@SuppressWarnings("unchecked")
+		List<Entity>[] cells = (List<Entity>[]) new List<?>[cw * ch];
+		this.cells = cells;
+	}
+
+	private int getCell(Entity e) {
+		int cx = clamp(e.x >> ENTITY_SHIFT, cw);
+		int cy = clamp(e.y >> ENTITY_SHIFT, ch);
+		return cx + cy * cw;
+	}
+
+	private static int clamp(int val, int size) {
+		return val < 0 ? 0 : val >= size ? size - 1 : val;
+	}
+
+	public synchronized void add(Entity e) {
+		if(filed.containsKey(e)) return;
+		file(e, getCell(e));
+	}
+
+	public synchronized void remove(Entity e) {
+		Integer cell = filed.remove(e);
+		if(cell != null)
+			unfile(e, cell);
+	}
+
+	/** Moves the entity to the right cell, if it has left the one it was filed under. This is cheap when it hasn't. */
+	public synchronized void update(Entity e) {
+		Integer old = filed.get(e);
+		if(old == null) return; // not in this grid.
+
+		int cell = getCell(e);
+		if(cell == old) return;
+
+		unfile(e, old);
+		file(e, cell);
+	}
+
+	private void file(Entity e, int cell) {
+		if(cells[cell] == null)
+			cells[cell] = new ArrayList<>();
+		cells[cell].add(e);
+		filed.put(e, cell);
+	}
+
+	private void unfile(Entity e, int cell) {
+		List<Entity> list = cells[cell];
+		for(int i = 0; i < list.size(); i++) {
+			if(list.get(i) == e) { // by identity; Entity.equals only compares ids.
+				list.remove(i);
+				return;
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		for(List<Entity> cell: cells)
+			if(cell != null)
+				cell.clear();
+		filed.clear();
+	}
+
+	/** Adds every entity whose center lies in the given tile bounds (inclusive) to the list. */
+	public synchronized void getInTiles(int xt0, int yt0, int xt1, int yt1, List<Entity> result) {
+		int cx0 = clamp(xt0 >> CELL_SHIFT, cw), cx1 = clamp(xt1 >> CELL_SHIFT, cw);
+		int cy0 = clamp(yt0 >> CELL_SHIFT, ch), cy1 = clamp(yt1 >> CELL_SHIFT, ch);
+
+		for(int cy = cy0; cy <= cy1; cy++) {
+			for(int cx = cx0; cx <= cx1; cx++) {
+				List<Entity> cell = cells[cx + cy * cw];
+				if(cell == null) continue;
+				for(int i = 0; i < cell.size(); i++) {
+					Entity e = cell.get(i);
+					int xt = e.x >> 4;
+					int yt = e.y >> 4;
+					if(xt >= xt0 && xt <= xt1 && yt >= yt0 && yt <= yt1)
+						result.add(e);
+				}
+			}
+		}
+	}
+
+	/** Adds every entity touching the given area to the list. */
+	public synchronized void getInRect(Rectangle area, List<Entity> result) {
+		int cx0 = clamp((area.getLeft() - MAX_ENTITY_RADIUS) >> ENTITY_SHIFT, cw);
+		int cx1 = clamp((area.getRight() + MAX_ENTITY_RADIUS) >> ENTITY_SHIFT, cw);
+		int cy0 = clamp((area.getTop() - MAX_ENTITY_RADIUS) >> ENTITY_SHIFT, ch);
+		int cy1 = clamp((area.getBottom() + MAX_ENTITY_RADIUS) >> ENTITY_SHIFT, ch);
+
+		for(int cy = cy0; cy <= cy1; cy++) {
+			for(int cx = cx0; cx <= cx1; cx++) {
+				List<Entity> cell = cells[cx + cy * cw];
+				if(cell == null) continue;
+				for(int i = 0; i < cell.size(); i++) {
+					Entity e = cell.get(i);
+					if(e.isTouching(area))
+						result.add(e);
+				}
+			}
+		}
+	}
+}
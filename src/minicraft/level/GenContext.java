@@ -0,0 +1,58 @@
+package minicraft.level;
+
+import minicraft.core.io.Settings;
+import minicraft.level.tile.Tiles;
+
+/**
+ * The world settings and tile ids that LevelGen needs, looked up once for each level that is generated,
+ * so that its loops over every tile only deal with plain values.
+ * It is made on the thread that starts the generation, since the settings can change in the menus while the maps are being made.
+ */
+class GenContext {
+
+	// terrain types
+	static final int ISLAND = 0, BOX = 1, MOUNTAIN = 2, IRREGULAR = 3;
+
+	final int type;
+	final boolean hell, desert, forest, plain;
+
+	final byte grass, sand, tree, flower, cactus, rock, dirt, water, lava, stairsDown;
+	final byte ironOre, lapis, obsidian, obsidianWall, cloud, cloudCactus, infiniteFall;
+	final byte liquid; // the water of the surface; lava in hell.
+
+	GenContext() {
+		String type = (String) Settings.get("Type");
+		switch (type) {
+			case "Box": this.type = BOX; break;
+			case "Mountain": this.type = MOUNTAIN; break;
+			case "Irregular": this.type = IRREGULAR; break;
+			default: this.type = ISLAND; break;
+		}
+
+		String theme = (String) Settings.get("Theme");
+		hell = theme.equals("Hell");
+		desert = theme.equals("Desert");
+		forest = theme.equals("Forest");
+		plain = theme.equals("Plain");
+
+		grass = Tiles.get("grass").id;
+		sand = Tiles.get("sand").id;
+		tree = Tiles.get("tree").id;
+		flower = Tiles.get("flower").id;
+		cactus = Tiles.get("cactus").id;
+		rock = Tiles.get("rock").id;
+		dirt = Tiles.get("dirt").id;
+		water = Tiles.get("water").id;
+		lava = Tiles.get("lava").id;
+		stairsDown = Tiles.get("Stairs Down").id;
+		ironOre = Tiles.get("iron Ore").id;
+		lapis = Tiles.get("Lapis").id;
+		obsidian = Tiles.get("Obsidian").id;
+		obsidianWall = Tiles.get("Obsidian Wall").id;
+		cloud = Tiles.get("cloud").id;
+		cloudCactus = Tiles.get("Cloud Cactus").id;
+		infiniteFall = Tiles.get("Infinite Fall").id;
+
+		liquid = hell ? lava : water;
+	}
+}
@@ -0,0 +1,60 @@
+package minicraft.level;
+
+import java.util.Random;
+
+/**
+ * A Random that gives exactly the same numbers as java.util.Random with the same seed, but that can also skip ahead
+ * any number of steps at once. This lets each noise map of a level start from the point of the stream where it would
+ * have started if the maps were made one after another, so they can be made at the same time without changing the result.
+ * Unlike java.util.Random, it is not meant to be shared between threads.
+ */
+class GenRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	private long state; // set by the Random constructor, through setSeed().
+
+	GenRandom(long seed) { super(seed); }
+
+	private GenRandom() { super(0); }
+
+	@Override
+	public void setSeed(long seed) {
+		super.setSeed(seed);
+		state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	@Override
+	protected int next(int bits) {
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state >>> (48 - bits));
+	}
+
+	/** Moves the stream ahead by the given number of calls to next(). */
+	void skip(long steps) {
+		// the step is state * m + a; doing it twice is state * m^2 + (m + 1) * a, and so on.
+		long mul = 1, add = 0;
+		long m = MULTIPLIER, a = ADDEND;
+		for(; steps > 0; steps >>>= 1) {
+			if((steps & 1) != 0) {
+				mul *= m;
+				add = add * m + a;
+			}
+			a *= m + 1;
+			m *= m;
+		}
+		state = (state * mul + add) & MASK;
+	}
+
+	/** Returns a new stream starting where this one will be after the given number of calls to next(); this one doesn't move. */
+	GenRandom fork(long steps) {
+		GenRandom copy = new GenRandom();
+		copy.state = state;
+		copy.skip(steps);
+		return copy;
+	}
+}
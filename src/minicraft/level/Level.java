@@ -5,6 +5,8 @@ import java.util.function.ToIntFunction;
 
 import minicraft.core.Game;
 import minicraft.core.Network;
+import minicraft.core.TickMetrics;
+import minicraft.core.TickMetrics.Phase;
 import minicraft.core.Updater;
 import minicraft.core.io.Settings;
 import minicraft.entity.ClientTickable;
@@ -12,6 +14,7 @@ import minicraft.entity.Entity;
 import minicraft.entity.ItemEntity;
 import minicraft.entity.furniture.Chest;
 import minicraft.entity.furniture.DungeonChest;
+import minicraft.entity.furniture.Furniture;
 import minicraft.entity.furniture.Spawner;
 import minicraft.entity.mob.*;
 import minicraft.entity.particle.Particle;
@@ -21,7 +24,6 @@ import minicraft.gfx.Screen;
 import minicraft.item.Item;
 import minicraft.level.tile.Tile;
 import minicraft.level.tile.Tiles;
-import minicraft.level.tile.TorchTile;
 
 public class Level {
 	private Random random = new Random();
@@ -45,8 +47,14 @@ public class Level {
 	
 	private Set<Entity> entities = java.util.Collections.synchronizedSet(new HashSet<>()); // A list of all the entities in the world
 	private Set<Player> players = java.util.Collections.synchronizedSet(new HashSet<>()); // A list of all the players in the world
+	private final EntityGrid entityGrid; // spatial index of the entities above, for the getEntitiesIn* queries.
+	private final DirtyTiles dirtyTiles; // tiles changed since the last tick, to be sent to clients by the server.
+	private BackgroundCache backgroundCache = null; // the drawn tiles; made when the level is first drawn.
+	private final LightMap lightMap; // the light from torches, lava, lanterns, and the like.
 	private List<Entity> entitiesToAdd = new ArrayList<>(); /// entities that will be added to the level on next tick are stored here. This is for the sake of multithreading optimization. (hopefully)
 	private List<Entity> entitiesToRemove = new ArrayList<>(); /// entities that will be removed from the level on next tick are stored here. This is for the sake of multithreading optimization. (hopefully)
+	private final List<Entity> pendingUpdates = new ArrayList<>(); // entities to broadcast updates of once a parallel tick is done.
+	private final List<Runnable> deferredChanges = new ArrayList<>(); // changes to other levels, and packets to clients, that this level made during a parallel tick.
 	// creates a sorter for all the entities to be rendered.
 	private static Comparator<Entity> spriteSorter = Comparator.comparingInt(new ToIntFunction<Entity>() {
 		@Override
@@ -102,6 +110,9 @@ public class Level {
 		depth = level;
 		this.w = w;
 		this.h = h;
+		entityGrid = new EntityGrid(w, h);
+		dirtyTiles = new DirtyTiles(w, h);
+		lightMap = new LightMap(this);
 		byte[][] maps; // multidimensional array (an array within a array), used for the map
 		
 		if(level != -4 && level != 0)
@@ -257,8 +268,13 @@ public class Level {
 	}
 
 	public void tick(boolean fullTick) {
-		int count = 0;
-		
+		addEntities();
+		tickEntities(fullTick);
+		removeEntities();
+	}
+	
+	/// adds the entities that were queued to be added. This and removeEntities() are the parts of a tick that can't be run in parallel with other levels.
+	void addEntities() {
 		while(entitiesToAdd.size() > 0) {
 			Entity entity = entitiesToAdd.get(0);
 			boolean inLevel = entities.contains(entity);
@@ -271,27 +287,38 @@ public class Level {
 					if (Game.debug) printEntityStatus("Adding ", entity, "furniture.DungeonChest", "mob.AirWizard", "mob.Player");
 					
 					entities.add(entity);
+					entityGrid.add(entity);
+					if(entity instanceof Furniture)
+						lightMap.furnitureMoved(entity);
+					Network.registerEntity(entity);
 					if(entity instanceof Player)
 						players.add((Player)entity);
 				}
 			}
 			entitiesToAdd.remove(entity);
 		}
+	}
+	
+	/// ticks the tiles and entities, and spawns mobs. During a parallel tick, only this runs on the level's own thread.
+	void tickEntities(boolean fullTick) {
+		int count = 0;
+		boolean deferUpdates = ParallelTicker.getTickingLevel() == this;
 		
 		if(fullTick && (!Game.isValidServer() || getPlayers().length > 0)) {
 			// this prevents any entity (or tile) tick action from happening on a server level with no players.
 			
+			long start = TickMetrics.start();
 			if (!Game.isValidClient()) {
 				for (int i = 0; i < w * h / 50; i++) {
 					int xt = random.nextInt(w);
 					int yt = random.nextInt(w);
 					getTile(xt, yt).tick(this, xt, yt);
-					if(Game.isValidServer())
-						Game.server.broadcastTileUpdate(this, xt, yt);
 				}
 			}
+			TickMetrics.end(Phase.TILES, start);
 			
 			// entity loop
+			start = TickMetrics.start();
 			for (Entity e : getEntityArray()) {
 				if (e == null) continue;
 				
@@ -318,7 +345,13 @@ public class Level {
 				
 				if (e.isRemoved()) continue;
 				
-				if (Game.hasConnectedClients()) // this means it's a server
+				entityGrid.update(e); // catches position changes made outside of move().
+				if(e instanceof Furniture)
+					lightMap.furnitureMoved(e);
+				
+				if (deferUpdates)
+					pendingUpdates.add(e);
+				else if (Game.hasConnectedClients()) // this means it's a server
 					Game.server.broadcastEntityUpdate(e);
 				
 				if (e instanceof Mob) count++;
@@ -328,6 +361,7 @@ public class Level {
 			for (Entity e : getEntityArray())
 				if (e.isRemoved() || e.getLevel() != this)
 					remove(e);
+			TickMetrics.end(Phase.ENTITIES, start);
 		}
 		
 		while(count > maxMobCount) {
@@ -349,6 +383,37 @@ public class Level {
 			}
 		}
 		
+		mobCount = count;
+		
+		if(Game.isValidServer() && players.size() == 0)
+			return; // don't try to spawn any mobs when there's no player on the level, on a server.
+		
+		if(fullTick && count < maxMobCount && !Game.isValidClient()) {
+			long start = TickMetrics.start();
+			trySpawn();
+			TickMetrics.end(Phase.SPAWNING, start);
+		}
+	}
+	
+	/// queues a change to be made once the parallel tick this level is in is over.
+	void defer(Runnable change) { deferredChanges.add(change); }
+	
+	/// runs the changes this level queued during a parallel tick, in the order it made them.
+	void applyDeferredChanges() {
+		for(Runnable change: deferredChanges)
+			change.run();
+		deferredChanges.clear();
+	}
+	
+	/// removes the entities that were queued to be removed, and sends clients what changed this tick.
+	void removeEntities() {
+		if(pendingUpdates.size() > 0) {
+			if(Game.hasConnectedClients())
+				for(Entity e: pendingUpdates)
+					Game.server.broadcastEntityUpdate(e);
+			pendingUpdates.clear();
+		}
+		
 		while(entitiesToRemove.size() > 0) {
 			Entity entity = entitiesToRemove.get(0);
 			
@@ -359,19 +424,22 @@ public class Level {
 			
 			entity.remove(this); // this will safely fail if the entity's level doesn't match this one.
 			entities.remove(entity);
+			entityGrid.remove(entity);
+			if(entity instanceof Furniture)
+				lightMap.furnitureRemoved(entity);
+			if(entity.getLevel() == null)
+				Network.unregisterEntity(entity); // otherwise it has already moved to another level.
 			
 			if(entity instanceof Player)
 				players.remove(entity);
 			entitiesToRemove.remove(entity);
 		}
 		
-		mobCount = count;
-		
-		if(Game.isValidServer() && players.size() == 0)
-			return; // don't try to spawn any mobs when there's no player on the level, on a server.
-		
-		if(fullTick && count < maxMobCount && !Game.isValidClient())
-			trySpawn();
+		if(Game.isValidServer()) {
+			long start = TickMetrics.start();
+			Game.server.broadcastTileChanges(this, dirtyTiles.drain()); // one batch per tick, of only the tiles that changed.
+			TickMetrics.end(Phase.NETWORK, start);
+		}
 	}
 	
 	public void printEntityStatus(String entityMessage, Entity entity, String... searching) {
@@ -416,19 +484,26 @@ public class Level {
 	}
 
 	public void renderBackground(Screen screen, int xScroll, int yScroll) {
+		if(backgroundCache == null)
+			backgroundCache = new BackgroundCache(this);
+		if(backgroundCache.render(screen, xScroll, yScroll))
+			return;
+		
+		// the cache only covers the level itself; this draws the tiles one by one instead.
 		int xo = xScroll >> 4; // latches to the nearest tile coordinate
 		int yo = yScroll >> 4;
 		int w = (Screen.w) >> 4; // there used to be a "+15" as in below method
 		int h = (Screen.h) >> 4;
 		screen.setOffset(xScroll, yScroll);
-		for (int y = yo; y <= h + yo; y++) {
-			for (int x = xo; x <= w + xo; x++) {
+		for (int y = yo - 1; y <= h + yo + 1; y++) { // one more tile each way, for a recorded frame drawn with the camera a little way off.
+			for (int x = xo - 1; x <= w + xo + 1; x++) {
 				getTile(x, y).render(screen, this, x, y);
 			}
 		}
 		screen.setOffset(0, 0);
 	}
 	
+	/** Draws the entities on the screen, partialTick (0 to 1) of the way from where they were at the start of the last tick to where they are now. */
 	public void renderSprites(Screen screen, int xScroll, int yScroll) {
 		int xo = xScroll >> 4; // latches to the nearest tile coordinate
 		int yo = yScroll >> 4;
@@ -436,7 +511,7 @@ public class Level {
 		int h = (Screen.h + 15) >> 4;
 		
 		screen.setOffset(xScroll, yScroll);
-		sortAndRender(screen, getEntitiesInTiles(xo, yo, xo + w, yo + h));
+		sortAndRender(screen, getEntitiesInTiles(xo - 1, yo - 1, xo + w + 1, yo + h + 1)); // with a tile to spare, like renderBackground().
 		
 		screen.setOffset(0, 0);
 	}
@@ -447,23 +522,17 @@ public class Level {
 		int w = (Screen.w + 15) >> 4;
 		int h = (Screen.h + 15) >> 4;
 
+		lightMap.render(screen, xScroll, yScroll, brightness); // the light from tiles and furniture.
+		
 		screen.setOffset(xScroll, yScroll);
 		int r = 4;
 		
 		List<Entity> entities = getEntitiesInTiles(xo - r, yo - r, w + xo + r, h + yo + r);
 		for(Entity e: entities) {
+			if (e instanceof Furniture) continue; // already in the light map.
 			int lr = e.getLightRadius();
 			if (lr > 0) screen.renderLight(e.x - 1, e.y - 4, lr * brightness);
 		}
-		
-		for (int y = yo - r; y <= h + yo + r; y++) {
-			for (int x = xo - r; x <= w + xo + r; x++) {
-				if (x < 0 || y < 0 || x >= this.w || y >= this.h) continue;
-				
-				int lr = getTile(x, y).getLightRadius(this, x, y);
-				if (lr > 0) screen.renderLight(x * 16 + 8, y * 16 + 8, lr * brightness);
-			}
-		}
 		screen.setOffset(0, 0);
 	}
 	
@@ -471,11 +540,14 @@ public class Level {
 		list.sort(spriteSorter);
 		for (int i = 0; i < list.size(); i++) {
 			Entity e = list.get(i);
-			if(e.getLevel() == this && !e.isRemoved())
+			if(e.getLevel() == this && !e.isRemoved()) {
+				screen.setMotion(e.getRenderX(0), e.getRenderY(0), e.x, e.y); // a recorded frame draws the entity partway between where it was at the last tick and where it is now.
 				e.render(screen);
+			}
 			else
 				remove(e);
 		}
+		screen.setMotion(0, 0, 0, 0);
 	}
 	
 	public Tile getTile(int x, int y) {
@@ -503,13 +575,14 @@ public class Level {
 		
 		if(Game.isValidClient() && !Game.isValidServer()) {
 			System.out.println("Client requested a tile update for the " + t.name + " tile at " + x + "," + y);
-		} else {
+		} else if(tiles[x + y * w] != t.id || data[x + y * w] != (byte) dataVal) {
 			tiles[x + y * w] = t.id;
 			data[x + y * w] = (byte) dataVal;
+			tilesChanged(x, y, x, y);
+			
+			if(Game.isValidServer())
+				dirtyTiles.mark(x, y);
 		}
-		
-		if(Game.isValidServer())
-			Game.server.broadcastTileUpdate(this, x, y);
 	}
 	
 	public int getData(int x, int y) {
@@ -519,7 +592,19 @@ public class Level {
 	
 	public void setData(int x, int y, int val) {
 		if (x < 0 || y < 0 || x >= w || y >= h) return;
+		if(data[x + y * w] == (byte) val) return;
 		data[x + y * w] = (byte) val;
+		tilesChanged(x, y, x, y);
+		if(Game.isValidServer())
+			dirtyTiles.mark(x, y);
+	}
+	
+	/** This must be called after tiles in the given area are changed by writing to the tiles or data arrays directly, so they get drawn again. */
+	public void tilesChanged(int x0, int y0, int x1, int y1) {
+		BackgroundCache cache = backgroundCache;
+		if(cache != null)
+			cache.invalidate(x0, y0, x1, y1);
+		lightMap.tilesChanged(x0, y0, x1, y1);
 	}
 	
 	public void add(Entity e) { if(e==null) return; add(e, e.x, e.y); }
@@ -530,6 +615,20 @@ public class Level {
 			x = x*16+8;
 			y = y*16+8;
 		}
+		
+		Level ticking = ParallelTicker.getTickingLevel();
+		if(ticking != null && ticking != this) {
+			// another level is being ticked on this thread; it can't touch this level until the tick is over.
+			int fx = x, fy = y;
+			ticking.defer(() -> {
+				Level prevLevel = entity.getLevel();
+				add(entity, fx, fy);
+				if(prevLevel != null && prevLevel != this)
+					prevLevel.remove(entity); // its removal pass for this tick is still to come.
+			});
+			return;
+		}
+		
 		entity.setLevel(this, x, y);
 		
 		entitiesToRemove.remove(entity); // to make sure the most recent request is satisfied.
@@ -538,6 +637,12 @@ public class Level {
 	}
 	
 	public void remove(Entity e) {
+		Level ticking = ParallelTicker.getTickingLevel();
+		if(ticking != null && ticking != this) {
+			ticking.defer(() -> remove(e));
+			return;
+		}
+		
 		entitiesToAdd.remove(e);
 		if(!entitiesToRemove.contains(e))
 			entitiesToRemove.add(e);
@@ -602,13 +707,25 @@ public class Level {
 	}
 	
 	public void clearEntities() {
-		if(!Game.ISONLINE)
+		if(!Game.ISONLINE) {
+			for(Entity e: entities)
+				Network.unregisterEntity(e);
 			entities.clear();
-		else
+			entityGrid.clear();
+			lightMap.clearFurniture();
+		} else
 			for(Entity e: getEntityArray())
 				e.remove();
 	}
 	
+	/** Remembers where each entity is at the start of a tick; see Entity.savePosition(). */
+	public void savePositions() {
+		synchronized (entities) {
+			for(Entity e: entities)
+				e.savePosition();
+		}
+	}
+	
 	public Entity[] getEntityArray() {
 		return entities.toArray(new Entity[0]);
 	}
@@ -620,32 +737,33 @@ public class Level {
 	@SafeVarargs
 	public final List<Entity> getEntitiesInTiles(int xt0, int yt0, int xt1, int yt1, boolean includeGiven, Class<? extends Entity>... entityClasses) {
 		List<Entity> contained = new ArrayList<>();
-		for(Entity e: getEntityArray()) {
-			int xt = e.x >> 4;
-			int yt = e.y >> 4;
-			if(xt >= xt0 && xt <= xt1 && yt >= yt0 && yt <= yt1) {
-				boolean matches = false;
-				for(int i = 0; !matches && i < entityClasses.length; i++)
-					if(entityClasses[i].isAssignableFrom(e.getClass()))
-						matches = true;
-				
-				if(matches == includeGiven)
-					contained.add(e);
-			}
-		}
+		entityGrid.getInTiles(xt0, yt0, xt1, yt1, contained);
+		
+		contained.removeIf(e -> {
+			boolean matches = false;
+			for(int i = 0; !matches && i < entityClasses.length; i++)
+				if(entityClasses[i].isAssignableFrom(e.getClass()))
+					matches = true;
+			
+			return matches != includeGiven;
+		});
 		
 		return contained;
 	}
 	
 	public List<Entity> getEntitiesInRect(Rectangle area) {
 		List<Entity> result = new ArrayList<>();
-		for(Entity e: getEntityArray()) {
-			if (e.isTouching(area))
-				result.add(e);
-		}
+		entityGrid.getInRect(area, result);
 		return result;
 	}
 	
+	/** Should be called whenever an entity on this level changes position, so the entity lookups stay accurate. */
+	public void entityMoved(Entity e) {
+		entityGrid.update(e);
+		if(e instanceof Furniture)
+			lightMap.furnitureMoved(e);
+	}
+	
 	/// finds all entities that are an instance of the given entity.
 	public Entity[] getEntitiesOfClass(Class<? extends Entity> targetClass) {
 		ArrayList<Entity> matches = new ArrayList<>();
@@ -745,12 +863,9 @@ public class Level {
 		return matches;
 	}
 	
+	/** Returns true if there is a torch within 3 tiles of the given tile. */
 	public boolean isLight(int x, int y) {
-		for(Tile t: getAreaTiles(x, y, 3))
-			if(t instanceof TorchTile)
-				return true;
-		
-		return false;
+		return lightMap.isLight(x, y);
 	}
 	
 	private boolean noStairs(int x, int y) {
@@ -4,29 +4,51 @@ import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.ToIntFunction;
 
 import minicraft.core.Game;
-import minicraft.core.io.Settings;
 import minicraft.level.tile.Tiles;
 import minicraft.screen.WorldGenDisplay;
 
 import org.jetbrains.annotations.Nullable;
 
 public class LevelGen {
-	private static long worldSeed = 0;
-	private static final Random random = new Random(worldSeed);
-	public double[] values; //An array of doubles, used to help making noise for the map
-	private int w, h; // width and height of the map
+	private static ForkJoinPool pool = null;
+	private static final Map<Integer, Job> pending = new HashMap<>(); // maps started by startGenerating(), by level.
+	
+	public final double[] values; //An array of doubles, used to help making noise for the map
+	private final int w, h; // width and height of the map
+	private final int scale, shift; // only every scale-th value in each direction is kept; scale is 1 << shift.
 	private static final int stairRadius = 15;
 	
-	/** This creates noise to create random values for level generation */
-	public LevelGen(int w, int h, int featureSize) {
+	public static int maxRetries = 2000; // set with the --worldgenretries argument. Surfaces of size 128 take the most tries: about 70 on average, and up to 650 over a thousand seeds.
+	private static final AtomicIntegerArray tries = new AtomicIntegerArray(6), rejectedEarly = new AtomicIntegerArray(6); // by 1 - level; levels are made at the same time.
+	
+	/** This creates noise to create random values for level generation, taking randomCalls(w, h, featureSize) values from the given random. */
+	public LevelGen(int w, int h, int featureSize, Random random) {
+		this(w, h, 1);
+		fill(featureSize, random);
+	}
+	
+	/// makes an empty noise map, to be filled with fill(). With a scale above 1 (a power of 2), only the values on a grid that coarse are worked out and kept, for previews.
+	private LevelGen(int w, int h, int scale) {
 		this.w = w;
 		this.h = h;
+		this.scale = scale;
+		shift = Integer.numberOfTrailingZeros(scale);
 		
-		values = new double[w * h];
-		
+		values = new double[(w >> shift) * (h >> shift)];
+	}
+	
+	/// fills the map with new noise. Every value is set again, so a map can be filled any number of times.
+	private void fill(int featureSize, Random random) {
 		/// feature size likely determines how big the biomes are, in some way. It tends to be 16 or 32, in the code below. 
 		for (int y = 0; y < w; y += featureSize) {
 			for (int x = 0; x < w; x += featureSize) {
@@ -88,11 +110,11 @@ public class LevelGen {
 			stepSize /= 2;
 			scale *= (scaleMod + 0.8);
 			scaleMod *= 0.3;
-		} while (stepSize > 1); // this stops when the stepsize is < 1, aka 0 b/c it's an int. At this point there are no more mid values.
+		} while (stepSize > this.scale); // this stops when the stepsize is < 1, aka 0 b/c it's an int. At this point there are no more mid values. For a preview, it stops once the values on its grid are set.
 	}
 	
 	private double sample(int x, int y) {
-		return values[(x & (w - 1)) + (y & (h - 1)) * w];
+		return values[((x & (w - 1)) >> shift) + ((y & (h - 1)) >> shift) * (w >> shift)];
 	} // this merely returns the value, like Level.getTile(x, y).
 	
 	private void setSample(int x, int y, double value) {
@@ -109,126 +131,249 @@ public class LevelGen {
 		 * 
 		 * In other words, this is just "values[x + y * w] = value;"
 		 */
-		values[(x & (w - 1)) + (y & (h - 1)) * w] = value;
+		values[((x & (w - 1)) >> shift) + ((y & (h - 1)) >> shift) * (w >> shift)] = value;
+	}
+	
+	/** Returns how many random values the constructor takes for noise of the given size; this follows its loops exactly. */
+	static long randomCalls(int w, int h, int featureSize) {
+		long calls = (long) ((w + featureSize - 1) / featureSize) * ((w + featureSize - 1) / featureSize);
+		int stepSize = featureSize;
+		do {
+			calls += 3L * ((h + stepSize - 1) / stepSize) * ((w + stepSize - 1) / stepSize); // one for each center, two for each pair of edges.
+			stepSize /= 2;
+		} while (stepSize > 1);
+		return calls;
+	}
+	
+	/**
+	 * Fills the given noise maps, with the given feature sizes, at the same time. Each one takes the part of the random stream it would have taken
+	 * if they were made one after another, and the stream is left after the last one. The maps are made the first time, and reused on later tries.
+	 */
+	private static LevelGen[] makeNoise(int w, int h, int scale, GenRandom random, LevelGen[] noise, int... featureSizes) {
+		ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[featureSizes.length];
+		long steps = 0;
+		for (int i = 0; i < featureSizes.length; i++) {
+			if (noise[i] == null)
+				noise[i] = new LevelGen(w, h, scale);
+			LevelGen map = noise[i];
+			int featureSize = featureSizes[i];
+			GenRandom stream = random.fork(steps);
+			tasks[i] = ForkJoinTask.adapt(() -> map.fill(featureSize, stream));
+			steps += randomCalls(w, h, featureSize);
+		}
+		random.skip(steps);
+		
+		ForkJoinTask.invokeAll(tasks);
+		return noise;
+	}
+	
+	private static synchronized ForkJoinPool getPool() {
+		if (pool == null)
+			pool = new ForkJoinPool(); // as many threads as there are processors.
+		return pool;
+	}
+	
+	private static class Job {
+		final int w, h;
+		final ForkJoinTask<byte[][]> task;
+		
+		Job(int w, int h, ForkJoinTask<byte[][]> task) {
+			this.w = w;
+			this.h = h;
+			this.task = task;
+		}
+	}
+	
+	/**
+	 * Starts making the maps of the given levels, all at the same time. createAndValidateMap() then waits for these instead of making them again.
+	 * Each map only depends on its seed and its level, so this gives the same maps as making them one at a time; the stairs between
+	 * the levels are still matched up afterward, by the Level constructors, from the top level down.
+	 */
+	public static void startGenerating(int w, int h, int minLevel, int maxLevel) {
+		synchronized (pending) {
+			for (Job job: pending.values())
+				job.task.cancel(false);
+			pending.clear();
+			
+			GenContext ctx = new GenContext();
+			for (int level = maxLevel; level >= minLevel; level--) {
+				long seed = WorldGenDisplay.getSeed(); // asked for each level, like createAndValidateMap(w, h, level) does.
+				int lvl = level;
+				pending.put(level, new Job(w, h, getPool().submit(() -> generate(w, h, lvl, seed, ctx))));
+			}
+		}
+	}
+	
+	/**
+	 * Makes a rough picture of the surface for the given seed, with one tile for every scale x scale tiles of the level, where scale is 1, 2, 4 or 8.
+	 * It shows the land, water and rock that the first try at the surface starts from, without the sand, trees and stairs added after,
+	 * and only works out the noise on the coarse grid, so it is quick enough to show while a seed is typed in.
+	 */
+	public static byte[] createSurfacePreview(int w, int h, int scale, long seed) {
+		int s = Integer.highestOneBit(Math.max(1, Math.min(8, scale))); // finer than the smallest features, which fill() always splits once.
+		GenContext ctx = new GenContext();
+		return getPool().invoke(ForkJoinTask.adapt(() -> {
+			LevelGen[] noise = makeNoise(w, h, s, new GenRandom(seed), new LevelGen[5], 16, 16, 16, 32, 32);
+			byte[] map = new byte[(w / s) * (h / s)];
+			makeLand(map, w, h, s, noise, ctx);
+			return map;
+		}));
 	}
 	
 	@Nullable
 	static byte[][] createAndValidateMap(int w, int h, int level) {
-		worldSeed = WorldGenDisplay.getSeed();
+		Job job;
+		synchronized (pending) {
+			job = pending.remove(level);
+		}
+		if (job != null && job.w == w && job.h == h)
+			return job.task.join();
 		
+		return createAndValidateMap(w, h, level, WorldGenDisplay.getSeed());
+	}
+	
+	@Nullable
+	static byte[][] createAndValidateMap(int w, int h, int level, long seed) {
+		GenContext ctx = new GenContext();
+		return getPool().invoke(ForkJoinTask.adapt(() -> generate(w, h, level, seed, ctx)));
+	}
+	
+	@Nullable
+	private static byte[][] generate(int w, int h, int level, long seed, GenContext ctx) {
 		if (level == 1)
-			return createAndValidateSkyMap(w, h);
+			return createAndValidateSkyMap(w, h, seed, ctx);
 		if (level == 0)
-			return createAndValidateTopMap(w, h);
+			return createAndValidateTopMap(w, h, seed, ctx);
 		if (level == -4)
-			return createAndValidateDungeon(w, h);
+			return createAndValidateDungeon(w, h, seed, ctx);
 		
 		if (level > -4 && level < 0)
-			return createAndValidateUndergroundMap(w, h, -level);
+			return createAndValidateUndergroundMap(w, h, -level, seed, ctx);
 		
 		System.err.println("LevelGen ERROR: level index is not valid. Could not generate a level.");
 		
 		return null;
 	}
 	
-	private static byte[][] createAndValidateTopMap(int w, int h) {
-		random.setSeed(worldSeed);
-		do {
-			byte[][] result = createTopMap(w, h);
-			
-			int[] count = new int[256];
-			
-			for (int i = 0; i < w * h; i++) {
-				count[result[0][i] & 0xff]++;
-			}
-			if (count[Tiles.get("rock").id & 0xff] < 100) continue;
-			if (count[Tiles.get("sand").id & 0xff] < 100) continue;
-			if (count[Tiles.get("grass").id & 0xff] < 100) continue;
-			if (count[Tiles.get("tree").id & 0xff] < 100) continue;
-			if (count[Tiles.get("Stairs Down").id & 0xff] < w / 21)
-				continue; // size 128 = 6 stairs min
-			
-			return result;
-			
-		} while (true);
+	/// counts each tile in the map.
+	private static int[] countTiles(byte[] map, int[] count) {
+		Arrays.fill(count, 0);
+		for (byte tile: map)
+			count[tile & 0xff]++;
+		return count;
 	}
 	
-	private static byte[][] createAndValidateUndergroundMap(int w, int h, int depth) {
-		random.setSeed(worldSeed);
-		do {
-			byte[][] result = createUndergroundMap(w, h, depth);
-			
-			int[] count = new int[256];
-			
-			for (int i = 0; i < w * h; i++) {
-				count[result[0][i] & 0xff]++;
-			}
-			if (count[Tiles.get("rock").id & 0xff] < 100) continue;
-			if (count[Tiles.get("dirt").id & 0xff] < 100) continue;
-			if (count[(Tiles.get("iron Ore").id & 0xff) + depth - 1] < 20) continue;
-			
-			if (depth < 3 && count[Tiles.get("Stairs Down").id & 0xff] < w / 32)
-				continue; // size 128 = 4 stairs min
-			
-			return result;
-			
-		} while (true);
+	/**
+	 * Returns the random stream for the given try at a map. The first try uses the seed itself, like every try used to.
+	 * Later tries each get a seed of their own instead of carrying on where the last try stopped, so that a try can be given up on partway through.
+	 */
+	private static GenRandom tryRandom(long seed, int attempt) {
+		return new GenRandom(attempt == 0 ? seed : seed + attempt * 0x9E3779B97F4A7C15L);
 	}
 	
-	private static byte[][] createAndValidateDungeon(int w, int h) {
-		random.setSeed(worldSeed);
-		
-		do {
-			byte[][] result = createDungeon(w, h);
-			
-			int[] count = new int[256];
-			
-			for (int i = 0; i < w * h; i++) {
-				count[result[0][i] & 0xff]++;
-			}
-			if (count[Tiles.get("Obsidian").id & 0xff] < 100) continue;
-			if (count[Tiles.get("Obsidian Wall").id & 0xff] < 100) continue;
-			
-			return result;
-			
-		} while (true);
+	/// makes one try at a map from the given random. It may give up and return null once it can't pass, unless it is told to finish.
+	private interface MapMaker {
+		@Nullable
+		byte[][] make(GenRandom random, boolean finish);
 	}
-
-	private static byte[][] createAndValidateSkyMap(int w, int h) {
-		random.setSeed(worldSeed);
-		
-		do {
-			byte[][] result = createSkyMap(w, h);
-			
-			int[] count = new int[256];
-			
-			for (int i = 0; i < w * h; i++) {
-				count[result[0][i] & 0xff]++;
+	
+	/**
+	 * Makes tries at a map until one passes its checks. The check gives the number of stairs down in the map, or -1 if it fails
+	 * anything other than the stairs; a map needs at least minStairs of them. The last of maxRetries retries is always finished,
+	 * and if it doesn't pass either, the finished try that came closest is kept, so that no seed can make a map take forever.
+	 */
+	private static byte[][] validate(int level, long seed, int minStairs, MapMaker maker, ToIntFunction<int[]> check) {
+		int[] count = new int[256];
+		byte[][] best = null;
+		int bestStairs = -2, rejected = 0;
+		for (int attempt = 0; ; attempt++) {
+			boolean last = attempt >= maxRetries;
+			byte[][] result = maker.make(tryRandom(seed, attempt), last);
+			if (result == null)
+				rejected++; // given up on partway through.
+			else {
+				int stairs = check.applyAsInt(countTiles(result[0], count));
+				if (stairs >= minStairs) {
+					tried(level, attempt + 1, rejected, false, 0);
+					return result;
+				}
+				if (stairs > bestStairs) {
+					best = result;
+					bestStairs = stairs;
+				}
 			}
-			if (count[Tiles.get("cloud").id & 0xff] < 2000) continue;
-			if (count[Tiles.get("Stairs Down").id & 0xff] < w / 64)
-				continue; // size 128 = 2 stairs min
-			
-			return result;
 			
-		} while (true);
+			if (last) {
+				tried(level, attempt + 1, rejected, true, bestStairs);
+				return best;
+			}
+		}
 	}
 	
-	private static byte[][] createTopMap(int w, int h) { // create surface map?
-		// creates a bunch of value maps, some with small size...
-		LevelGen mnoise1 = new LevelGen(w, h, 16);
-		LevelGen mnoise2 = new LevelGen(w, h, 16);
-		LevelGen mnoise3 = new LevelGen(w, h, 16);
-		// ...and some with larger size.
-		LevelGen noise1 = new LevelGen(w, h, 32);
-		LevelGen noise2 = new LevelGen(w, h, 32);
-		
-		byte[] map = new byte[w * h];
-		byte[] data = new byte[w * h];
+	/// takes note of how many tries the map of a level took.
+	private static void tried(int level, int attempts, int rejected, boolean failed, int keptStairs) {
+		tries.set(1 - level, attempts);
+		rejectedEarly.set(1 - level, rejected);
+		if (failed)
+			System.err.println("LevelGen: no map of level " + level + " passed its checks in " + attempts + " tries; keeping " +
+				(keptStairs < 0 ? "one that is short of other tiles." : "one with " + keptStairs + " stairs down."));
+		else if (Game.debug)
+			System.out.println("Level " + level + " map took " + attempts + " tries, " + rejected + " of them given up on before they were finished.");
+	}
+	
+	/** Returns how many tries the last map made of the given level took. */
+	public static int getTries(int level) { return tries.get(1 - level); }
+	/** Returns how many of those tries were given up on before the map was finished. */
+	public static int getRejectedEarly(int level) { return rejectedEarly.get(1 - level); }
+	
+	private static byte[][] createAndValidateTopMap(int w, int h, long seed, GenContext ctx) {
+		LevelGen[] noise = new LevelGen[5]; // reused by every try.
+		return validate(0, seed, w / 21, // size 128 = 6 stairs min
+			(random, finish) -> createTopMap(w, h, random, finish, noise, ctx),
+			count -> count[ctx.rock & 0xff] < 100 || count[ctx.sand & 0xff] < 100 || count[ctx.grass & 0xff] < 100 || count[ctx.tree & 0xff] < 100 ? -1 : count[ctx.stairsDown & 0xff]
+		);
+	}
+	
+	private static byte[][] createAndValidateUndergroundMap(int w, int h, int depth, long seed, GenContext ctx) {
+		LevelGen[] noise = new LevelGen[11]; // reused by every try.
+		return validate(-depth, seed, depth < 3 ? w / 32 : 0, // size 128 = 4 stairs min
+			(random, finish) -> createUndergroundMap(w, h, depth, random, finish, noise, ctx),
+			count -> count[ctx.rock & 0xff] < 100 || count[ctx.dirt & 0xff] < 100 || count[(ctx.ironOre & 0xff) + depth - 1] < 20 ? -1 : count[ctx.stairsDown & 0xff]
+		);
+	}
+	
+	private static byte[][] createAndValidateDungeon(int w, int h, long seed, GenContext ctx) {
+		LevelGen[] noise = new LevelGen[2]; // reused by every try.
+		return validate(-4, seed, 0,
+			(random, finish) -> createDungeon(w, h, random, finish, noise, ctx),
+			count -> count[ctx.obsidian & 0xff] < 100 || count[ctx.obsidianWall & 0xff] < 100 ? -1 : 0
+		);
+	}
 
-		for (int y = 0; y < h; y++) {
-			for (int x = 0; x < w; x++) {
-				int i = x + y * w;
+	private static byte[][] createAndValidateSkyMap(int w, int h, long seed, GenContext ctx) {
+		LevelGen[] noise = new LevelGen[2]; // reused by every try.
+		return validate(1, seed, w / 64, // size 128 = 2 stairs min
+			(random, finish) -> createSkyMap(w, h, random, finish, noise, ctx),
+			count -> count[ctx.cloud & 0xff] < 2000 ? -1 : count[ctx.stairsDown & 0xff]
+		);
+	}
+	
+	/// sets the tiles of the surface before anything is added to it: land, water and rock. The map has one tile for every scale x scale tiles of the level.
+	private static void makeLand(byte[] map, int w, int h, int scale, LevelGen[] noise, GenContext ctx) {
+		LevelGen mnoise1 = noise[0];
+		LevelGen mnoise2 = noise[1];
+		LevelGen mnoise3 = noise[2];
+		LevelGen noise1 = noise[3];
+		LevelGen noise2 = noise[4];
+		
+		int type = ctx.type;
+		byte grass = ctx.grass, rock = ctx.rock, liquid = ctx.liquid;
+		
+		int pw = w / scale, ph = h / scale;
+		for (int py = 0; py < ph; py++) {
+			for (int px = 0; px < pw; px++) {
+				int i = px + py * pw; // the noise maps have the same scale.
+				int x = px * scale, y = py * scale;
 				
 				double val = Math.abs(noise1.values[i] - noise2.values[i]) * 3 - 2;
 				double mval = Math.abs(mnoise1.values[i] - mnoise2.values[i]);
@@ -244,70 +389,72 @@ public class LevelGen {
 				dist = dist * dist * dist * dist;
 				val += 1 - dist*20;
 				
-				switch ((String) Settings.get("Type")) {
-					case "Island":
+				switch (type) {
+					case GenContext.ISLAND:
 						
 						if (val < -0.5) {
-							if (Settings.get("Theme").equals("Hell"))
-								map[i] = Tiles.get("lava").id;
-							else
-								map[i] = Tiles.get("water").id;
+							map[i] = liquid;
 						} else if (val > 0.5 && mval < -1.5) {
-							map[i] = Tiles.get("rock").id;
+							map[i] = rock;
 						} else {
-							map[i] = Tiles.get("grass").id;
+							map[i] = grass;
 						}
 						
 						break;
-					case "Box":
+					case GenContext.BOX:
 						
 						if (val < -1.5) {
-							if (Settings.get("Theme").equals("Hell")) {
-								map[i] = Tiles.get("lava").id;
-							} else {
-								map[i] = Tiles.get("water").id;
-							}
+							map[i] = liquid;
 						} else if (val > 0.5 && mval < -1.5) {
-							map[i] = Tiles.get("rock").id;
+							map[i] = rock;
 						} else {
-							map[i] = Tiles.get("grass").id;
+							map[i] = grass;
 						}
 						
 						break;
-					case "Mountain":
+					case GenContext.MOUNTAIN:
 						
 						if (val < -0.4) {
-							map[i] = Tiles.get("grass").id;
+							map[i] = grass;
 						} else if (val > 0.5 && mval < -1.5) {
-							if (Settings.get("Theme").equals("Hell")) {
-								map[i] = Tiles.get("lava").id;
-							} else {
-								map[i] = Tiles.get("water").id;
-							}
+							map[i] = liquid;
 						} else {
-							map[i] = Tiles.get("rock").id;
+							map[i] = rock;
 						}
 						break;
 					
-					case "Irregular":
+					case GenContext.IRREGULAR:
 						if (val < -0.5 && mval < -0.5) {
-							if (Settings.get("Theme").equals("Hell")) {
-								map[i] = Tiles.get("lava").id;
-							}
-							if (!Settings.get("Theme").equals("Hell")) {
-								map[i] = Tiles.get("water").id;
-							}
+							map[i] = liquid;
 						} else if (val > 0.5 && mval < -1.5) {
-							map[i] = Tiles.get("rock").id;
+							map[i] = rock;
 						} else {
-							map[i] = Tiles.get("grass").id;
+							map[i] = grass;
 						}
 						break;
 				}
 			}
 		}
+	}
+	
+	@Nullable
+	private static byte[][] createTopMap(int w, int h, GenRandom random, boolean finish, LevelGen[] buffers, GenContext ctx) { // create surface map?
+		// creates a bunch of value maps, some with small size, and some with larger size.
+		LevelGen[] noise = makeNoise(w, h, 1, random, buffers, 16, 16, 16, 32, 32);
+		
+		byte grass = ctx.grass, sand = ctx.sand, tree = ctx.tree, flower = ctx.flower, cactus = ctx.cactus;
+		byte rock = ctx.rock, stairsDown = ctx.stairsDown;
+		
+		byte[] map = new byte[w * h];
+		byte[] data = new byte[w * h];
+		makeLand(map, w, h, 1, noise, ctx);
+		
+		// nothing added below turns anything into rock or grass, so a map without enough of them now won't pass.
+		int[] tiles = countTiles(map, new int[256]);
+		if (!finish && (tiles[rock & 0xff] < 100 || tiles[grass & 0xff] < 100))
+			return null;
 		
-		if (Settings.get("Theme").equals("Desert")) {
+		if (ctx.desert) {
 			
 			for (int i = 0; i < w * h / 200; i++) {
 				int xs = random.nextInt(w);
@@ -321,8 +468,8 @@ public class LevelGen {
 						for (int yy = yo - 1; yy <= yo + 1; yy++)
 							for (int xx = xo - 1; xx <= xo + 1; xx++)
 								if (xx >= 0 && yy >= 0 && xx < w && yy < h) {
-									if (map[xx + yy * w] == Tiles.get("grass").id) {
-										map[xx + yy * w] = Tiles.get("sand").id;
+									if (map[xx + yy * w] == grass) {
+										map[xx + yy * w] = sand;
 									}
 								}
 					}
@@ -330,7 +477,7 @@ public class LevelGen {
 			}
 		}
 		
-		if (!Settings.get("Theme").equals("Desert")) {
+		if (!ctx.desert) {
 			
 			for (int i = 0; i < w * h / 2800; i++) {
 				int xs = random.nextInt(w);
@@ -344,8 +491,8 @@ public class LevelGen {
 						for (int yy = yo - 1; yy <= yo + 1; yy++)
 							for (int xx = xo - 1; xx <= xo + 1; xx++)
 								if (xx >= 0 && yy >= 0 && xx < w && yy < h) {
-									if (map[xx + yy * w] == Tiles.get("grass").id) {
-										map[xx + yy * w] = Tiles.get("sand").id;
+									if (map[xx + yy * w] == grass) {
+										map[xx + yy * w] = sand;
 									}
 								}
 					}
@@ -353,7 +500,7 @@ public class LevelGen {
 			}
 		}
 		
-		if (Settings.get("Theme").equals("Forest")) {
+		if (ctx.forest) {
 			for (int i = 0; i < w * h / 200; i++) {
 				int x = random.nextInt(w);
 				int y = random.nextInt(h);
@@ -361,14 +508,14 @@ public class LevelGen {
 					int xx = x + random.nextInt(15) - random.nextInt(15);
 					int yy = y + random.nextInt(15) - random.nextInt(15);
 					if (xx >= 0 && yy >= 0 && xx < w && yy < h) {
-						if (map[xx + yy * w] == Tiles.get("grass").id) {
-							map[xx + yy * w] = Tiles.get("tree").id;
+						if (map[xx + yy * w] == grass) {
+							map[xx + yy * w] = tree;
 						}
 					}
 				}
 			}
 		}
-		if (!Settings.get("Theme").equals("Forest") && !Settings.get("Theme").equals("Plain")) {
+		if (!ctx.forest && !ctx.plain) {
 			for (int i = 0; i < w * h / 1200; i++) {
 				int x = random.nextInt(w);
 				int y = random.nextInt(h);
@@ -376,15 +523,15 @@ public class LevelGen {
 					int xx = x + random.nextInt(15) - random.nextInt(15);
 					int yy = y + random.nextInt(15) - random.nextInt(15);
 					if (xx >= 0 && yy >= 0 && xx < w && yy < h) {
-						if (map[xx + yy * w] == Tiles.get("grass").id) {
-							map[xx + yy * w] = Tiles.get("tree").id;
+						if (map[xx + yy * w] == grass) {
+							map[xx + yy * w] = tree;
 						}
 					}
 				}
 			}
 		}
 		
-		if (Settings.get("Theme").equals("Plain")) {
+		if (ctx.plain) {
 			for (int i = 0; i < w * h / 2800; i++) {
 				int x = random.nextInt(w);
 				int y = random.nextInt(h);
@@ -392,14 +539,14 @@ public class LevelGen {
 					int xx = x + random.nextInt(15) - random.nextInt(15);
 					int yy = y + random.nextInt(15) - random.nextInt(15);
 					if (xx >= 0 && yy >= 0 && xx < w && yy < h) {
-						if (map[xx + yy * w] == Tiles.get("grass").id) {
-							map[xx + yy * w] = Tiles.get("tree").id;
+						if (map[xx + yy * w] == grass) {
+							map[xx + yy * w] = tree;
 						}
 					}
 				}
 			}
 		}
-		if (!Settings.get("Theme").equals("Plain")) {
+		if (!ctx.plain) {
 			for (int i = 0; i < w * h / 400; i++) {
 				int x = random.nextInt(w);
 				int y = random.nextInt(h);
@@ -407,8 +554,8 @@ public class LevelGen {
 					int xx = x + random.nextInt(15) - random.nextInt(15);
 					int yy = y + random.nextInt(15) - random.nextInt(15);
 					if (xx >= 0 && yy >= 0 && xx < w && yy < h) {
-						if (map[xx + yy * w] == Tiles.get("grass").id) {
-							map[xx + yy * w] = Tiles.get("tree").id;
+						if (map[xx + yy * w] == grass) {
+							map[xx + yy * w] = tree;
 						}
 					}
 				}
@@ -423,8 +570,8 @@ public class LevelGen {
 				int xx = x + random.nextInt(5) - random.nextInt(5);
 				int yy = y + random.nextInt(5) - random.nextInt(5);
 				if (xx >= 0 && yy >= 0 && xx < w && yy < h) {
-					if (map[xx + yy * w] == Tiles.get("grass").id) {
-						map[xx + yy * w] = Tiles.get("flower").id;
+					if (map[xx + yy * w] == grass) {
+						map[xx + yy * w] = flower;
 						data[xx + yy * w] = (byte) (col + random.nextInt(4) * 16); // data determines which way the flower faces
 					}
 				}
@@ -435,8 +582,8 @@ public class LevelGen {
 			int xx = random.nextInt(w);
 			int yy = random.nextInt(h);
 			if (xx >= 0 && yy >= 0 && xx < w && yy < h) {
-				if (map[xx + yy * w] == Tiles.get("sand").id) {
-					map[xx + yy * w] = Tiles.get("cactus").id;
+				if (map[xx + yy * w] == sand) {
+					map[xx + yy * w] = cactus;
 				}
 			}
 		}
@@ -453,16 +600,16 @@ public class LevelGen {
 			// the first loop, which checks to make sure that a new stairs tile will be completely surrounded by rock. 
 			for (int yy = y - 1; yy <= y + 1; yy++)
 				for (int xx = x - 1; xx <= x + 1; xx++)
-					if (map[xx + yy * w] != Tiles.get("rock").id)
+					if (map[xx + yy * w] != rock)
 						continue stairsLoop;
 			
 			// this should prevent any stairsDown tile from being within 30 tiles of any other stairsDown tile.
 			for (int yy = Math.max(0, y - stairRadius); yy <= Math.min(h - 1, y + stairRadius); yy++)
 				for (int xx = Math.max(0, x - stairRadius); xx <= Math.min(w - 1, x + stairRadius); xx++)
-					if (map[xx + yy * w] == Tiles.get("Stairs Down").id)
+					if (map[xx + yy * w] == stairsDown)
 						continue stairsLoop;
 			
-			map[x + y * w] = Tiles.get("Stairs Down").id;
+			map[x + y * w] = stairsDown;
 			
 			count++;
 			if (count >= w / 21) break;
@@ -476,9 +623,13 @@ public class LevelGen {
 		return new byte[][]{map, data};
 	}
 	
-	private static byte[][] createDungeon(int w, int h) {
-		LevelGen noise1 = new LevelGen(w, h, 8);
-		LevelGen noise2 = new LevelGen(w, h, 8);
+	@Nullable
+	private static byte[][] createDungeon(int w, int h, GenRandom random, boolean finish, LevelGen[] buffers, GenContext ctx) {
+		LevelGen[] noise = makeNoise(w, h, 1, random, buffers, 8, 8);
+		LevelGen noise1 = noise[0];
+		LevelGen noise2 = noise[1];
+		
+		byte obsidian = ctx.obsidian, obsidianWall = ctx.obsidianWall;
 		
 		byte[] map = new byte[w * h];
 		byte[] data = new byte[w * h];
@@ -500,13 +651,18 @@ public class LevelGen {
 				val += 1 - dist * 2;
 				
 				if (val < -0.35) {
-					map[i] = Tiles.get("Obsidian Wall").id;
+					map[i] = obsidianWall;
 				} else {
-					map[i] = Tiles.get("Obsidian").id;
+					map[i] = obsidian;
 				}
 			}
 		}
 		
+		// the lava pools below only replace obsidian walls.
+		int[] tiles = countTiles(map, new int[256]);
+		if (!finish && (tiles[obsidian & 0xff] < 100 || tiles[obsidianWall & 0xff] < 100))
+			return null;
+		
 		lavaLoop:
 		for (int i = 0; i < w * h / 450; i++) {
 			int x = random.nextInt(w - 2) + 1;
@@ -514,7 +670,7 @@ public class LevelGen {
 			
 			for (int yy = y - 1; yy <= y + 1; yy++)
 				for (int xx = x - 1; xx <= x + 1; xx++) {
-					if (map[xx + yy * w] != Tiles.get("Obsidian Wall").id) continue lavaLoop;
+					if (map[xx + yy * w] != obsidianWall) continue lavaLoop;
 				}
 			
 			Structure.lavaPool.draw(map, x, y, w);
@@ -523,21 +679,25 @@ public class LevelGen {
 		return new byte[][]{map, data};
 	}
 	
-	private static byte[][] createUndergroundMap(int w, int h, int depth) {
-		LevelGen mnoise1 = new LevelGen(w, h, 16);
-		LevelGen mnoise2 = new LevelGen(w, h, 16);
-		LevelGen mnoise3 = new LevelGen(w, h, 16);
+	@Nullable
+	private static byte[][] createUndergroundMap(int w, int h, int depth, GenRandom random, boolean finish, LevelGen[] buffers, GenContext ctx) {
+		LevelGen[] noise = makeNoise(w, h, 1, random, buffers, 16, 16, 16, 16, 16, 16, 16, 16, 16, 32, 32);
+		LevelGen mnoise1 = noise[0];
+		LevelGen mnoise2 = noise[1];
+		LevelGen mnoise3 = noise[2];
 		
-		LevelGen nnoise1 = new LevelGen(w, h, 16);
-		LevelGen nnoise2 = new LevelGen(w, h, 16);
-		LevelGen nnoise3 = new LevelGen(w, h, 16);
+		LevelGen nnoise1 = noise[3];
+		LevelGen nnoise2 = noise[4];
+		LevelGen nnoise3 = noise[5];
 		
-		LevelGen wnoise1 = new LevelGen(w, h, 16);
-		LevelGen wnoise2 = new LevelGen(w, h, 16);
-		LevelGen wnoise3 = new LevelGen(w, h, 16);
+		LevelGen wnoise1 = noise[6];
+		LevelGen wnoise2 = noise[7];
+		LevelGen wnoise3 = noise[8];
 		
-		LevelGen noise1 = new LevelGen(w, h, 32);
-		LevelGen noise2 = new LevelGen(w, h, 32);
+		LevelGen noise1 = noise[9];
+		LevelGen noise2 = noise[10];
+		
+		byte rock = ctx.rock, dirt = ctx.dirt, water = ctx.water, lava = ctx.lava, ironOre = ctx.ironOre, lapis = ctx.lapis, stairsDown = ctx.stairsDown;
 		
 		byte[] map = new byte[w * h];
 		byte[] data = new byte[w * h];
@@ -569,16 +729,22 @@ public class LevelGen {
 				val += 1 - dist * 20;
 				
 				if (val > -1 && wval < -1 + (depth) / 2 * 3) {
-					if (depth == 3) map[i] = Tiles.get("lava").id;
-					else if (depth == 1) map[i] = Tiles.get("dirt").id;
-					else map[i] = Tiles.get("water").id;
+					if (depth == 3) map[i] = lava;
+					else if (depth == 1) map[i] = dirt;
+					else map[i] = water;
 				} else if (val > -2 && (mval < -1.7 || nval < -1.4)) {
-					map[i] = Tiles.get("dirt").id;
+					map[i] = dirt;
 				} else {
-					map[i] = Tiles.get("rock").id;
+					map[i] = rock;
 				}
 			}
 		}
+		
+		// the ores, dungeon lock and stairs below only take rock and dirt away.
+		int[] tiles = countTiles(map, new int[256]);
+		if (!finish && (tiles[rock & 0xff] < 100 || tiles[dirt & 0xff] < 100))
+			return null;
+		
 		{
 			int r = 2;
 			for (int i = 0; i < w * h / 400; i++) {
@@ -588,8 +754,8 @@ public class LevelGen {
 					int xx = x + random.nextInt(5) - random.nextInt(5);
 					int yy = y + random.nextInt(5) - random.nextInt(5);
 					if (xx >= r && yy >= r && xx < w - r && yy < h - r) {
-						if (map[xx + yy * w] == Tiles.get("rock").id) {
-							map[xx + yy * w] = (byte) ((Tiles.get("iron Ore").id & 0xff) + depth - 1);
+						if (map[xx + yy * w] == rock) {
+							map[xx + yy * w] = (byte) ((ironOre & 0xff) + depth - 1);
 						}
 					}
 				}
@@ -597,8 +763,8 @@ public class LevelGen {
 					int xx = x + random.nextInt(3) - random.nextInt(2);
 					int yy = y + random.nextInt(3) - random.nextInt(2);
 					if (xx >= r && yy >= r && xx < w - r && yy < h - r) {
-						if (map[xx + yy * w] == Tiles.get("rock").id) {
-							map[xx + yy * w] = (byte) (Tiles.get("Lapis").id & 0xff);
+						if (map[xx + yy * w] == rock) {
+							map[xx + yy * w] = (byte) (lapis & 0xff);
 						}
 					}
 				}
@@ -614,7 +780,7 @@ public class LevelGen {
 					if (xx < w - r && yy < h - r) {
 						Structure.dungeonLock.draw(map, xx, yy, w);
 						/// The "& 0xff" is a common way to convert a byte to an unsigned int, which basically prevents negative values... except... this doesn't do anything if you flip it back to a byte again...
-						map[xx + yy * w] = (byte) (Tiles.get("Stairs Down").id & 0xff);
+						map[xx + yy * w] = (byte) (stairsDown & 0xff);
 					}
 				}
 			}
@@ -629,14 +795,14 @@ public class LevelGen {
 				
 				for (int yy = y - 1; yy <= y + 1; yy++)
 					for (int xx = x - 1; xx <= x + 1; xx++)
-						if (map[xx + yy * w] != Tiles.get("rock").id) continue stairsLoop;
+						if (map[xx + yy * w] != rock) continue stairsLoop;
 				
 				// this should prevent any stairsDown tile from being within 30 tiles of any other stairsDown tile.
 				for (int yy = Math.max(0, y - stairRadius); yy <= Math.min(h - 1, y + stairRadius); yy++)
 					for (int xx = Math.max(0, x - stairRadius); xx <= Math.min(w - 1, x + stairRadius); xx++)
-						if (map[xx + yy * w] == Tiles.get("Stairs Down").id) continue stairsLoop;
+						if (map[xx + yy * w] == stairsDown) continue stairsLoop;
 				
-				map[x + y * w] = Tiles.get("Stairs Down").id;
+				map[x + y * w] = stairsDown;
 				count++;
 				if (count >= w / 32) break;
 			}
@@ -645,9 +811,13 @@ public class LevelGen {
 		return new byte[][]{map, data};
 	}
 	
-	private static byte[][] createSkyMap(int w, int h) {
-		LevelGen noise1 = new LevelGen(w, h, 8);
-		LevelGen noise2 = new LevelGen(w, h, 8);
+	@Nullable
+	private static byte[][] createSkyMap(int w, int h, GenRandom random, boolean finish, LevelGen[] buffers, GenContext ctx) {
+		LevelGen[] noise = makeNoise(w, h, 1, random, buffers, 8, 8);
+		LevelGen noise1 = noise[0];
+		LevelGen noise2 = noise[1];
+		
+		byte cloud = ctx.cloud, cloudCactus = ctx.cloudCactus, infiniteFall = ctx.infiniteFall, stairsDown = ctx.stairsDown;
 		
 		byte[] map = new byte[w * h];
 		byte[] data = new byte[w * h];
@@ -669,13 +839,18 @@ public class LevelGen {
 				val += 1 - dist * 20;
 				
 				if (val < -0.25) {
-					map[i] = Tiles.get("Infinite Fall").id;
+					map[i] = infiniteFall;
 				} else {
-					map[i] = Tiles.get("cloud").id;
+					map[i] = cloud;
 				}
 			}
 		}
 		
+		// the cactuses and stairs below only replace clouds.
+		int[] tiles = countTiles(map, new int[256]);
+		if (!finish && tiles[cloud & 0xff] < 2000)
+			return null;
+		
 		stairsLoop:
 		for (int i = 0; i < w * h / 50; i++) {
 			int x = random.nextInt(w - 2) + 1;
@@ -683,10 +858,10 @@ public class LevelGen {
 			
 			for (int yy = y - 1; yy <= y + 1; yy++)
 				for (int xx = x - 1; xx <= x + 1; xx++) {
-					if (map[xx + yy * w] != Tiles.get("cloud").id) continue stairsLoop;
+					if (map[xx + yy * w] != cloud) continue stairsLoop;
 				}
 			
-			map[x + y * w] = Tiles.get("Cloud Cactus").id;
+			map[x + y * w] = cloudCactus;
 		}
 		
 		int count = 0;
@@ -697,15 +872,15 @@ public class LevelGen {
 			
 			for (int yy = y - 1; yy <= y + 1; yy++)
 				for (int xx = x - 1; xx <= x + 1; xx++) {
-					if (map[xx + yy * w] != Tiles.get("cloud").id) continue stairsLoop;
+					if (map[xx + yy * w] != cloud) continue stairsLoop;
 				}
 			
 			// this should prevent any stairsDown tile from being within 30 tiles of any other stairsDown tile.
 			for (int yy = Math.max(0, y - stairRadius); yy <= Math.min(h - 1, y + stairRadius); yy++)
 				for (int xx = Math.max(0, x - stairRadius); xx <= Math.min(w - 1, x + stairRadius); xx++)
-					if (map[xx + yy * w] == Tiles.get("Stairs Down").id) continue stairsLoop;
+					if (map[xx + yy * w] == stairsDown) continue stairsLoop;
 			
-			map[x + y * w] = Tiles.get("Stairs Down").id;
+			map[x + y * w] = stairsDown;
 			count++;
 			if (count >= w / 64) break;
 		}
@@ -714,7 +889,7 @@ public class LevelGen {
 	}
 	
 	public static void main(String[] args) {
-		LevelGen.worldSeed = 0x100;
+		long worldSeed = 0x100;
 		
 		// Fixes to get this method to work
 		
@@ -752,7 +927,7 @@ public class LevelGen {
 			
 			int lvl = maplvls[idx++ % maplvls.length];
 			if (lvl > 1 || lvl < -4) continue;
-			byte[][] fullmap = LevelGen.createAndValidateMap(w, h, lvl);
+			byte[][] fullmap = LevelGen.createAndValidateMap(w, h, lvl, worldSeed);
 			if (fullmap == null) continue;
 			byte[] map = fullmap[0];
 			
@@ -783,10 +958,10 @@ public class LevelGen {
 			}
 			img.setRGB(0, 0, w, h, pixels, 0, w);
 			JOptionPane.showMessageDialog(null, null, "Another Map", JOptionPane.PLAIN_MESSAGE, new ImageIcon(img.getScaledInstance(w * 4, h * 4, Image.SCALE_AREA_AVERAGING)));
-			if (LevelGen.worldSeed == 0x100)
-				LevelGen.worldSeed = 0xAAFF20;
+			if (worldSeed == 0x100)
+				worldSeed = 0xAAFF20;
 			else
-				LevelGen.worldSeed = 0x100;
+				worldSeed = 0x100;
 		}
 	}
 }
@@ -0,0 +1,219 @@
+package minicraft.level;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import minicraft.core.io.Settings;
+import minicraft.level.tile.Tiles;
+
+/**
+ * Times the generation of the map of every level, for a few seeds and world sizes, without a window.
+ * It shows how long each map takes, how much it allocates, and how many tries it took, and checks
+ * a hash of each map against the hashes below, so that a change to LevelGen can't change the worlds of existing seeds unnoticed.
+ * It also checks that the coarse surface previews show the same tiles as a full-size preview does at the same points.
+ *
+ * Usage: java -Djava.awt.headless=true -cp minicraft.jar minicraft.level.LevelGenBenchmark [--sizes 128,256,512] [--runs 3] [--warmup 1] [--update]
+ * --update prints the hashes of the maps as they are now, to replace GOLDEN with when a change to the worlds is meant.
+ * The exit code is 1 if any hash or preview doesn't match.
+ */
+public class LevelGenBenchmark {
+	private LevelGenBenchmark() {}
+
+	private static final long[] SEEDS = {0x100, 0xAAFF20, 42}; // the first two are the ones LevelGen.main() shows.
+	private static final int[] LEVELS = {1, 0, -1, -2, -3, -4};
+
+	// size, seed, level, hash of the tiles and data; for the Island type and Normal theme, with the default retries.
+	// Every map here is the one the original generator made, except the surfaces marked "reseeded retries". Their first try
+	// failed, and each retry now has a seed of its own instead of carrying on from the last try, so they differ on purpose.
+	// The rest, including every sky, underground and dungeon map, must stay the same as the original.
+	private static final long[][] GOLDEN = {
+		{128, 0x100, 1, 0xC9311A71589071B5L},
+		{128, 0x100, 0, 0xF72C314B02F3C04DL}, // reseeded retries
+		{128, 0x100, -1, 0x5FB0A275F2636D5FL},
+		{128, 0x100, -2, 0xDC871E56E9C177AAL},
+		{128, 0x100, -3, 0xB86999530547DE7CL},
+		{128, 0x100, -4, 0x120C215AA684F2FBL},
+		{128, 0xAAFF20, 1, 0xA39D12EFDE10BABCL},
+		{128, 0xAAFF20, 0, 0xE8A52CEBC8ED6377L}, // reseeded retries
+		{128, 0xAAFF20, -1, 0x39B543A0B6CFB16BL},
+		{128, 0xAAFF20, -2, 0x55FCB54CCB93881EL},
+		{128, 0xAAFF20, -3, 0x8FF3C03B14790211L},
+		{128, 0xAAFF20, -4, 0x295B6BCC7EDE2667L},
+		{128, 0x2A, 1, 0xE584ABF81492F658L},
+		{128, 0x2A, 0, 0x31C9CAD7822E2C53L}, // reseeded retries
+		{128, 0x2A, -1, 0x9CDF9D6582A2817BL},
+		{128, 0x2A, -2, 0xB2597E0F7BA216E8L},
+		{128, 0x2A, -3, 0x3010A67523A54533L},
+		{128, 0x2A, -4, 0x4F4E9BA92F444852L},
+		{256, 0x100, 1, 0xC291E68B3FC4B7D3L},
+		{256, 0x100, 0, 0xC3542A643394489BL}, // reseeded retries
+		{256, 0x100, -1, 0x278DEC5846D7B161L},
+		{256, 0x100, -2, 0x879B452445D18A92L},
+		{256, 0x100, -3, 0x94601B1109AED627L},
+		{256, 0x100, -4, 0x2D82702EC8A97CAEL},
+		{256, 0xAAFF20, 1, 0x88A827742953BE9EL},
+		{256, 0xAAFF20, 0, 0x8C04CDC2665BCD70L}, // reseeded retries
+		{256, 0xAAFF20, -1, 0x4B61D57307D7EA25L},
+		{256, 0xAAFF20, -2, 0x03C05A9F849D40BFL},
+		{256, 0xAAFF20, -3, 0x32437808D563EFD2L},
+		{256, 0xAAFF20, -4, 0x4737E1707305FB1BL},
+		{256, 0x2A, 1, 0x8730BF1495DFFE52L},
+		{256, 0x2A, 0, 0xCD0CE5F7DCD25508L}, // reseeded retries
+		{256, 0x2A, -1, 0x290D90200B3C5E53L},
+		{256, 0x2A, -2, 0xA88DC79C65254543L},
+		{256, 0x2A, -3, 0x351EF638D16B3A97L},
+		{256, 0x2A, -4, 0x86B17C878FDCC581L},
+		{512, 0x100, 1, 0x43EA23E9E545961BL},
+		{512, 0x100, 0, 0x71434122D6B6753AL}, // reseeded retries
+		{512, 0x100, -1, 0xC64E772305EA79D7L},
+		{512, 0x100, -2, 0x5D48402309C6F299L},
+		{512, 0x100, -3, 0x036680FF38CF4611L},
+		{512, 0x100, -4, 0x9D71457726268BB2L},
+		{512, 0xAAFF20, 1, 0xF5683AB6FE4ADC21L},
+		{512, 0xAAFF20, 0, 0x5A22AB127F983ADEL},
+		{512, 0xAAFF20, -1, 0xB5AF5B799278E55DL},
+		{512, 0xAAFF20, -2, 0x069DE088F935E371L},
+		{512, 0xAAFF20, -3, 0x9146CEE2DCED03D6L},
+		{512, 0xAAFF20, -4, 0xE5634220F1D16616L},
+		{512, 0x2A, 1, 0x6F4BFBDC6E0E8DAEL},
+		{512, 0x2A, 0, 0x5808192BCC4B8DD0L},
+		{512, 0x2A, -1, 0x0C9FD480A17195DEL},
+		{512, 0x2A, -2, 0x7FC0D4F070E62B49L},
+		{512, 0x2A, -3, 0x6306ACEC8E69A634L},
+		{512, 0x2A, -4, 0x16D96D59BF104016L}
+	};
+
+	public static void main(String[] args) {
+		int[] sizes = {128, 256, 512};
+		int runs = 3, warmup = 1;
+		boolean update = false;
+		for(int i = 0; i < args.length; i++) {
+			try {
+				if(args[i].equals("--sizes") && i+1 < args.length) {
+					String[] list = args[++i].split(",");
+					sizes = new int[list.length];
+					for(int j = 0; j < list.length; j++)
+						sizes[j] = Integer.parseInt(list[j].trim());
+				}
+				else if(args[i].equals("--runs") && i+1 < args.length)
+					runs = Math.max(1, Integer.parseInt(args[++i]));
+				else if(args[i].equals("--warmup") && i+1 < args.length)
+					warmup = Math.max(0, Integer.parseInt(args[++i]));
+				else if(args[i].equals("--update"))
+					update = true;
+			} catch(NumberFormatException ex) {
+				System.err.println("Invalid number: " + args[i]);
+				System.exit(2);
+			}
+		}
+
+		Tiles.initTileList();
+		Settings.set("type", "Island");
+		Settings.set("theme", "Normal");
+		LevelGen.maxRetries = 2000; // the hashes depend on it if a map ever runs out of retries.
+
+		Map<String, Long> golden = new HashMap<>();
+		for(long[] entry: GOLDEN)
+			golden.put(entry[0] + " " + entry[1] + " " + entry[2], entry[3]);
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		boolean measureAlloc = threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean)threads).isThreadAllocatedMemorySupported();
+
+		System.out.println(String.format(Locale.ROOT, "%5s %9s %5s %6s %6s %9s %9s %9s  %-16s %s", "size", "seed", "level", "tries", "early", "avg ms", "min ms", "alloc MB", "hash", "golden"));
+		int mismatches = 0, missing = 0;
+		StringBuilder updated = new StringBuilder();
+		double totalMs = 0;
+		for(int size: sizes) {
+			for(long seed: SEEDS) {
+				for(int level: LEVELS) {
+					byte[][] map = null;
+					for(int i = 0; i < warmup; i++)
+						LevelGen.createAndValidateMap(size, size, level, seed);
+
+					long minNanos = Long.MAX_VALUE, sumNanos = 0, allocated = 0;
+					for(int i = 0; i < runs; i++) {
+						long alloc = measureAlloc ? allocatedBytes(threads) : 0;
+						long start = System.nanoTime();
+						map = LevelGen.createAndValidateMap(size, size, level, seed);
+						long nanos = System.nanoTime() - start;
+						if(measureAlloc) allocated += allocatedBytes(threads) - alloc;
+						minNanos = Math.min(minNanos, nanos);
+						sumNanos += nanos;
+					}
+					totalMs += sumNanos / 1E6 / runs;
+
+					long hash = hash(map);
+					Long expected = golden.get(size + " " + seed + " " + level);
+					String result;
+					if(expected == null) {
+						result = "none";
+						missing++;
+					} else if(expected == hash)
+						result = "ok";
+					else {
+						result = "MISMATCH (expected " + Long.toHexString(expected) + ")";
+						mismatches++;
+					}
+					updated.append(String.format(Locale.ROOT, "\t\t{%d, 0x%X, %d, 0x%016XL},%n", size, seed, level, hash));
+
+					System.out.println(String.format(Locale.ROOT, "%5d %9X %5d %6d %6d %9.1f %9.1f %9s  %016x %s",
+						size, seed, level, LevelGen.getTries(level), LevelGen.getRejectedEarly(level), sumNanos / 1E6 / runs, minNanos / 1E6,
+						measureAlloc ? String.format(Locale.ROOT, "%.1f", allocated / 1048576D / runs) : "-", hash, result));
+				}
+			}
+		}
+
+		System.out.println(String.format(Locale.ROOT, "Total: %.1f ms per run; %d hashes didn't match, %d had nothing to check against.", totalMs, mismatches, missing));
+
+		int previews = 0, badPreviews = 0;
+		for(int size: sizes) {
+			for(long seed: SEEDS) {
+				byte[] full = LevelGen.createSurfacePreview(size, size, 1, seed);
+				for(int scale = 2; scale <= 8; scale *= 2) {
+					long start = System.nanoTime();
+					byte[] preview = LevelGen.createSurfacePreview(size, size, scale, seed);
+					long nanos = System.nanoTime() - start;
+					int pw = size / scale, wrong = 0;
+					for(int i = 0; i < preview.length; i++)
+						if(preview[i] != full[(i % pw) * scale + (i / pw) * scale * size])
+							wrong++;
+					previews++;
+					if(wrong > 0) {
+						badPreviews++;
+						System.out.println(String.format(Locale.ROOT, "Preview of size %d, seed %X at scale %d: %d of %d tiles differ from the full-size preview.", size, seed, scale, wrong, preview.length));
+					} else if(scale == 8)
+						System.out.println(String.format(Locale.ROOT, "Preview of size %d, seed %X at scale %d: %.1f ms", size, seed, scale, nanos / 1E6));
+				}
+			}
+		}
+		System.out.println(String.format(Locale.ROOT, "%d of %d surface previews didn't match.", badPreviews, previews));
+		mismatches += badPreviews;
+		if(update)
+			System.out.print("Hashes of the maps as they are now:" + System.lineSeparator() + updated);
+
+		System.exit(mismatches > 0 ? 1 : 0);
+	}
+
+	/// the bytes allocated by every live thread so far; the maps are made on the threads of LevelGen's pool, which stay alive between maps.
+	private static long allocatedBytes(ThreadMXBean threads) {
+		long total = 0;
+		for(long bytes: ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(threads.getAllThreadIds()))
+			if(bytes > 0) total += bytes;
+		return total;
+	}
+
+	/// FNV-1a of the tiles, then the data.
+	private static long hash(byte[][] map) {
+		long hash = 0xcbf29ce484222325L;
+		for(byte[] array: map) {
+			for(byte b: array) {
+				hash ^= b & 0xff;
+				hash *= 0x100000001b3L;
+			}
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,231 @@
+package minicraft.level;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import minicraft.entity.Entity;
+import minicraft.gfx.Screen;
+import minicraft.level.tile.TorchTile;
+
+/**
+ * The light given off by a level's light sources that stay put: tiles like torches and lava, and furniture like lanterns.
+ * It is kept as a brightness for the center of each tile, and only the tiles that a source reaches are worked out again
+ * when it is placed, removed or moved. Drawing the light is then a matter of smoothing that brightness out over the pixels.
+ * Entities that carry light around with them, like players, are still drawn with Screen.renderLight().
+ */
+class LightMap {
+
+	private static final int TORCH_RANGE = 3; // isLight() is true this many tiles away from a torch.
+
+	private final Level level;
+	private final int w, h;
+	private byte[] tiles = null; // the level's tile array the map was made for; it is made again if that changes.
+
+	private byte[] emitters; // the light radius of each tile.
+	private BitSet torches;
+	private byte[] torchesNear; // the number of torches within TORCH_RANGE of each tile.
+	private final Map<Entity, int[]> furniture = new IdentityHashMap<>(); // the light center x and y, and the light radius, of each furniture that gives off light.
+
+	private byte[] brightness = null; // 0-255 at the center of each tile; made when the light is first drawn.
+	private int multiplier = 0; // the brightness multiplier the brightness was worked out with.
+	private int maxReach = 0; // the furthest, in tiles, that a source has reached.
+
+	private int[] columns = new int[0]; // the brightness of the tile columns on the row being drawn.
+
+	LightMap(Level level) {
+		this.level = level;
+		w = level.w;
+		h = level.h;
+	}
+
+	/// (re)makes everything if the level's tiles were replaced since the last time.
+	private void checkTiles() {
+		if(level.tiles == tiles) return;
+		tiles = level.tiles;
+
+		emitters = new byte[w * h];
+		torches = new BitSet(w * h);
+		torchesNear = new byte[w * h];
+		for(int y = 0; y < h; y++) {
+			for(int x = 0; x < w; x++) {
+				emitters[x + y * w] = (byte) Math.min(127, level.getTile(x, y).getLightRadius(level, x, y));
+				if(level.getTile(x, y) instanceof TorchTile)
+					setTorch(x, y, true);
+			}
+		}
+		brightness = null;
+	}
+
+	private void setTorch(int x, int y, boolean torch) {
+		torches.set(x + y * w, torch);
+		for(int yy = Math.max(0, y - TORCH_RANGE); yy <= Math.min(h - 1, y + TORCH_RANGE); yy++)
+			for(int xx = Math.max(0, x - TORCH_RANGE); xx <= Math.min(w - 1, x + TORCH_RANGE); xx++)
+				torchesNear[xx + yy * w] += torch ? 1 : -1;
+	}
+
+	/** Returns true if there is a torch within TORCH_RANGE tiles of the given tile. */
+	synchronized boolean isLight(int x, int y) {
+		if(x < 0 || y < 0 || x >= w || y >= h) return false;
+		checkTiles();
+		return torchesNear[x + y * w] > 0;
+	}
+
+	/** Takes note of the light sources in an area of tiles that has changed. */
+	synchronized void tilesChanged(int x0, int y0, int x1, int y1) {
+		if(tiles == null) return; // nothing has been worked out yet.
+		if(level.tiles != tiles) {
+			checkTiles();
+			return;
+		}
+
+		x0 = Math.max(0, x0); y0 = Math.max(0, y0);
+		x1 = Math.min(w - 1, x1); y1 = Math.min(h - 1, y1);
+		int reach = -1; // how far the light of removed or dimmed sources reached.
+		for(int y = y0; y <= y1; y++) {
+			for(int x = x0; x <= x1; x++) {
+				int i = x + y * w;
+				boolean torch = level.getTile(x, y) instanceof TorchTile;
+				if(torch != torches.get(i))
+					setTorch(x, y, torch);
+
+				int radius = Math.min(127, level.getTile(x, y).getLightRadius(level, x, y));
+				if(radius == emitters[i]) continue;
+				int old = emitters[i];
+				emitters[i] = (byte) radius;
+				if(brightness == null) continue;
+
+				if(radius > old)
+					stamp(x * 16 + 8, y * 16 + 8, radius, 0, 0, w - 1, h - 1);
+				else
+					reach = Math.max(reach, old * multiplier / 16 + 1);
+			}
+		}
+
+		if(reach >= 0)
+			recompute(x0 - reach, y0 - reach, x1 + reach, y1 + reach);
+	}
+
+	/** Takes note of where a piece of furniture is, if it gives off light. */
+	synchronized void furnitureMoved(Entity e) {
+		int radius = e.getLightRadius();
+		int[] old = furniture.get(e);
+		if(radius <= 0) {
+			if(old != null) furnitureRemoved(e);
+			return;
+		}
+
+		int x = e.x - 1, y = e.y - 4; // where Screen.renderLight used to be centered for entities.
+		if(old != null && old[0] == x && old[1] == y && old[2] == radius)
+			return;
+
+		furniture.put(e, new int[] {x, y, radius});
+		if(brightness == null) return;
+
+		if(old != null)
+			recomputeAround(old);
+		stamp(x, y, radius, 0, 0, w - 1, h - 1);
+	}
+
+	synchronized void furnitureRemoved(Entity e) {
+		int[] old = furniture.remove(e);
+		if(old != null && brightness != null)
+			recomputeAround(old);
+	}
+
+	synchronized void clearFurniture() {
+		furniture.clear();
+		brightness = null;
+	}
+
+	private void recomputeAround(int[] light) {
+		int reach = light[2] * multiplier / 16 + 1;
+		recompute((light[0] >> 4) - reach, (light[1] >> 4) - reach, (light[0] >> 4) + reach, (light[1] >> 4) + reach);
+	}
+
+	/// works out the brightness of the given area of tiles again, from every source that reaches it.
+	private void recompute(int x0, int y0, int x1, int y1) {
+		x0 = Math.max(0, x0); y0 = Math.max(0, y0);
+		x1 = Math.min(w - 1, x1); y1 = Math.min(h - 1, y1);
+		for(int y = y0; y <= y1; y++)
+			for(int x = x0; x <= x1; x++)
+				brightness[x + y * w] = 0;
+
+		for(int y = Math.max(0, y0 - maxReach); y <= Math.min(h - 1, y1 + maxReach); y++)
+			for(int x = Math.max(0, x0 - maxReach); x <= Math.min(w - 1, x1 + maxReach); x++)
+				if(emitters[x + y * w] > 0)
+					stamp(x * 16 + 8, y * 16 + 8, emitters[x + y * w], x0, y0, x1, y1);
+
+		for(int[] light: furniture.values())
+			stamp(light[0], light[1], light[2], x0, y0, x1, y1);
+	}
+
+	/// lights the tiles within the given area, from a source centered at the given level coordinates.
+	private void stamp(int cx, int cy, int radius, int x0, int y0, int x1, int y1) {
+		int r = radius * multiplier; // in pixels, like Screen.renderLight().
+		if(r <= 0) return;
+		int reach = r / 16 + 1;
+		maxReach = Math.max(maxReach, reach);
+
+		int rr = r * r;
+		for(int y = Math.max(y0, (cy >> 4) - reach); y <= Math.min(y1, (cy >> 4) + reach); y++) {
+			int yd = y * 16 + 8 - cy;
+			for(int x = Math.max(x0, (cx >> 4) - reach); x <= Math.min(x1, (cx >> 4) + reach); x++) {
+				int xd = x * 16 + 8 - cx;
+				int dist = xd * xd + yd * yd;
+				if(dist > rr) continue;
+				int br = 255 - dist * 255 / rr;
+				if(br > (brightness[x + y * w] & 0xFF))
+					brightness[x + y * w] = (byte) br;
+			}
+		}
+	}
+
+	/// works out the brightness of every tile.
+	private void build(int multiplier) {
+		this.multiplier = multiplier;
+		brightness = new byte[w * h];
+		maxReach = 0;
+		for(int y = 0; y < h; y++)
+			for(int x = 0; x < w; x++)
+				if(emitters[x + y * w] > 0)
+					stamp(x * 16 + 8, y * 16 + 8, emitters[x + y * w], 0, 0, w - 1, h - 1);
+		for(int[] light: furniture.values())
+			stamp(light[0], light[1], light[2], 0, 0, w - 1, h - 1);
+	}
+
+	private int getBrightness(int x, int y) {
+		if(x < 0 || y < 0 || x >= w || y >= h) return 0;
+		return brightness[x + y * w] & 0xFF;
+	}
+
+	/**
+	 * Draws the light onto a light screen, with the given part of the level at the top left. The brightness of the tile centers
+	 * is blended smoothly between them, so each pixel only takes a few additions and multiplications.
+	 */
+	synchronized void render(Screen screen, int xScroll, int yScroll, int multiplier) {
+		checkTiles();
+		if(brightness == null || multiplier != this.multiplier)
+			build(multiplier);
+
+		int tx0 = (xScroll - 8) >> 4; // the first tile column whose center is at or to the left of the screen.
+		int count = ((xScroll + Screen.w - 8) >> 4) - tx0 + 2;
+		if(columns.length < count)
+			columns = new int[count];
+
+		int[] pixels = screen.pixels;
+		int i = 0;
+		for(int py = 0; py < Screen.h; py++) {
+			int ly = yScroll + py - 8;
+			int ty = ly >> 4, fy = ly & 15;
+			for(int c = 0; c < count; c++)
+				columns[c] = getBrightness(tx0 + c, ty) * (16 - fy) + getBrightness(tx0 + c, ty + 1) * fy;
+
+			for(int px = 0; px < Screen.w; px++, i++) {
+				int lx = xScroll + px - 8;
+				int c = (lx >> 4) - tx0, fx = lx & 15;
+				pixels[i] = (columns[c] * (16 - fx) + columns[c + 1] * fx) >> 8;
+			}
+		}
+	}
+}
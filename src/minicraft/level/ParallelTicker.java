@@ -0,0 +1,82 @@
+package minicraft.level;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Ticks the levels of a server at the same time, each one on a thread of a fork-join pool.
+ * While the levels tick, changes to other levels (such as an entity moving to another level) and every packet for clients
+ * are queued by the level that made them, since neither the other levels nor the server threads are safe to touch from
+ * several threads at once. Once all of the levels are done, the queues are applied in level order, so the result doesn't
+ * depend on which level happened to finish first.
+ */
+public class ParallelTicker {
+	private ParallelTicker() {}
+
+	public static boolean enabled = false; // set with the --parallelticks argument.
+
+	private static ForkJoinPool pool = null;
+	private static final ThreadLocal<Level> tickingLevel = new ThreadLocal<>();
+
+	/** Returns the level that the current thread is ticking in parallel with the others, or null if there isn't one. */
+	@Nullable
+	static Level getTickingLevel() { return tickingLevel.get(); }
+	
+	/**
+	 * If the current thread is ticking a level in parallel with the others, queues the action to be run once they are all done,
+	 * after the actions that level queued before it.
+	 * @return true if the action was queued, false if the caller should just run it now.
+	 */
+	public static boolean defer(Runnable action) {
+		Level level = tickingLevel.get();
+		if(level == null) return false;
+		level.defer(action);
+		return true;
+	}
+
+	public static void tick(Level[] levels) {
+		if(pool == null)
+			pool = new ForkJoinPool(Math.max(1, Math.min(levels.length, Runtime.getRuntime().availableProcessors())));
+
+		for(Level level: levels)
+			if(level != null)
+				level.addEntities();
+
+		ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[levels.length];
+		for(int i = 0; i < levels.length; i++) {
+			Level level = levels[i];
+			if(level == null) continue;
+			tasks[i] = pool.submit(() -> {
+				tickingLevel.set(level);
+				try {
+					level.tickEntities(true);
+				} finally {
+					tickingLevel.remove();
+				}
+			});
+		}
+
+		RuntimeException error = null;
+		for(ForkJoinTask<?> task: tasks) {
+			if(task == null) continue;
+			try {
+				task.join();
+			} catch(RuntimeException ex) {
+				if(error == null) error = ex; // the other levels still need to finish, and the queues to be applied.
+			}
+		}
+
+		// the barrier: everything is back on this thread now.
+		for(Level level: levels)
+			if(level != null)
+				level.applyDeferredChanges();
+		for(Level level: levels)
+			if(level != null)
+				level.removeEntities();
+
+		if(error != null)
+			throw error;
+	}
+}
@@ -22,6 +22,7 @@ public class LavaTile extends Tile {
 		super.csprite = sprite;
 		connectsToSand = true;
 		connectsToFluid = true;
+		animated = true;
 	}
 	
 	public void render(Screen screen, Level level, int x, int y) {
@@ -30,6 +30,7 @@ public abstract class Tile {
 	public boolean connectsToGrass = false;
 	public boolean connectsToSand = false;
 	public boolean connectsToFluid = false;
+	public boolean animated = false; // if true, the tile looks different over time, so it is drawn every frame instead of being cached.
 	public int light;
 	protected boolean maySpawn;
 	
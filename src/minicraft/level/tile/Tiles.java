@@ -1,6 +1,9 @@
 package minicraft.level.tile;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import minicraft.core.Game;
 import minicraft.level.tile.wool.*;
@@ -11,70 +14,76 @@ public final class Tiles {
 	
 	public static ArrayList<String> oldids = new ArrayList<>();
 	
-	private static ArrayList<Tile> tiles = new ArrayList<>();
+	// these are only changed by initTileList(), so they can be read from any thread after that.
+	private static final Tile[] tiles = new Tile[256]; // by id; ids from 128 on are the torch versions of the ones below 128.
+	private static final Map<String, Tile> names = new HashMap<>(); // by upper case name, torch versions included.
+	
+	private static final Map<String, Tile> lookups = new ConcurrentHashMap<>(); // the names that get(String) has been asked for, as they were given.
 	
 	public static void initTileList() {
 		if(Game.debug) System.out.println("Initializing tile list...");
 		
-		for(int i = 0; i < 256; i++)
-			tiles.add(null);
+		if(names.size() > 0) return; // already done.
 		
-		tiles.set(0, new GrassTile("Grass"));
-		tiles.set(1, new DirtTile("Dirt"));
-		tiles.set(2, new FlowerTile("Flower"));
-		tiles.set(3, new HoleTile("Hole"));
-		tiles.set(4, new StairsTile("Stairs Up", true));
-		tiles.set(5, new StairsTile("Stairs Down", false));
-		tiles.set(6, new WaterTile("Water"));
+		set(0, new GrassTile("Grass"));
+		set(1, new DirtTile("Dirt"));
+		set(2, new FlowerTile("Flower"));
+		set(3, new HoleTile("Hole"));
+		set(4, new StairsTile("Stairs Up", true));
+		set(5, new StairsTile("Stairs Down", false));
+		set(6, new WaterTile("Water"));
 		// this is out of order because of lava buckets
-		tiles.set(17, new LavaTile("Lava"));
+		set(17, new LavaTile("Lava"));
 
-		tiles.set(7, new RockTile("Rock"));
-		tiles.set(8, new TreeTile("Tree"));
-		tiles.set(9, new SaplingTile("Tree Sapling", Tiles.get("Grass"), Tiles.get("Tree")));
-		tiles.set(10, new SandTile("Sand"));
-		tiles.set(11, new CactusTile("Cactus"));
-		tiles.set(12, new SaplingTile("Cactus Sapling", Tiles.get("Sand"), Tiles.get("Cactus")));
-		tiles.set(13, new OreTile(OreTile.OreType.Iron));
-		tiles.set(14, new OreTile(OreTile.OreType.Gold));
-		tiles.set(15, new OreTile(OreTile.OreType.Gem));
-		tiles.set(16, new OreTile(OreTile.OreType.Lapis));
-		tiles.set(18, new LavaBrickTile("Lava Brick"));
-		tiles.set(19, new ExplodedTile("Explode"));
-		tiles.set(20, new FarmTile("Farmland"));
-		tiles.set(21, new WheatTile("Wheat"));
-		tiles.set(22, new HardRockTile("Hard Rock"));
-		tiles.set(23, new InfiniteFallTile("Infinite Fall"));
-		tiles.set(24, new CloudTile("Cloud"));
-		tiles.set(25, new CloudCactusTile("Cloud Cactus"));
-		tiles.set(26, new DoorTile(Tile.Material.Wood));
-		tiles.set(27, new DoorTile(Tile.Material.Stone));
-		tiles.set(28, new DoorTile(Tile.Material.Obsidian));
-		tiles.set(29, new FloorTile(Tile.Material.Wood));
-		tiles.set(30, new FloorTile(Tile.Material.Stone));
-		tiles.set(31, new FloorTile(Tile.Material.Obsidian));
-		tiles.set(32, new WallTile(Tile.Material.Wood));
-		tiles.set(33, new WallTile(Tile.Material.Stone));
-		tiles.set(34, new WallTile(Tile.Material.Obsidian));
-		tiles.set(35, new NormalWoolTile("Wool"));
-		tiles.set(36, new PathTile("Path"));
-		tiles.set(37, new RedWoolTile("Red Wool"));
-		tiles.set(38, new BlueWoolTile("Blue Wool"));
-		tiles.set(39, new GreenWoolTile("Green Wool"));
-		tiles.set(40, new YellowWoolTile("Yellow Wool"));
-		tiles.set(41, new BlackWoolTile("Black Wool"));
-		
-		for(int i = 0; i < tiles.size(); i++) {
-			if(tiles.get(i) == null) continue;
-			tiles.get(i).id = (byte)i;
-		}
+		set(7, new RockTile("Rock"));
+		set(8, new TreeTile("Tree"));
+		set(9, new SaplingTile("Tree Sapling", Tiles.get("Grass"), Tiles.get("Tree")));
+		set(10, new SandTile("Sand"));
+		set(11, new CactusTile("Cactus"));
+		set(12, new SaplingTile("Cactus Sapling", Tiles.get("Sand"), Tiles.get("Cactus")));
+		set(13, new OreTile(OreTile.OreType.Iron));
+		set(14, new OreTile(OreTile.OreType.Gold));
+		set(15, new OreTile(OreTile.OreType.Gem));
+		set(16, new OreTile(OreTile.OreType.Lapis));
+		set(18, new LavaBrickTile("Lava Brick"));
+		set(19, new ExplodedTile("Explode"));
+		set(20, new FarmTile("Farmland"));
+		set(21, new WheatTile("Wheat"));
+		set(22, new HardRockTile("Hard Rock"));
+		set(23, new InfiniteFallTile("Infinite Fall"));
+		set(24, new CloudTile("Cloud"));
+		set(25, new CloudCactusTile("Cloud Cactus"));
+		set(26, new DoorTile(Tile.Material.Wood));
+		set(27, new DoorTile(Tile.Material.Stone));
+		set(28, new DoorTile(Tile.Material.Obsidian));
+		set(29, new FloorTile(Tile.Material.Wood));
+		set(30, new FloorTile(Tile.Material.Stone));
+		set(31, new FloorTile(Tile.Material.Obsidian));
+		set(32, new WallTile(Tile.Material.Wood));
+		set(33, new WallTile(Tile.Material.Stone));
+		set(34, new WallTile(Tile.Material.Obsidian));
+		set(35, new NormalWoolTile("Wool"));
+		set(36, new PathTile("Path"));
+		set(37, new RedWoolTile("Red Wool"));
+		set(38, new BlueWoolTile("Blue Wool"));
+		set(39, new GreenWoolTile("Green Wool"));
+		set(40, new YellowWoolTile("Yellow Wool"));
+		set(41, new BlackWoolTile("Black Wool"));
+		
+		for(int i = 0; i < 128; i++)
+			if(tiles[i] != null)
+				TorchTile.getTorchTile(tiles[i]); // the torch versions are all made now, so the list never changes after this.
 	}
 	
+	private static void set(int id, Tile tile) {
+		tiles[id] = tile;
+		tile.id = (byte) id;
+		names.put(tile.name, tile);
+	}
 	
 	protected static void add(int id, Tile tile) {
-		tiles.set(id, tile);
-		System.out.println("Adding " + tile.name + " to tile list with id " + id);
-		tile.id = (byte) id;
+		set(id, tile);
+		if(Game.debug) System.out.println("Adding " + tile.name + " to tile list with id " + id);
 	}
 	
 	static {
@@ -169,51 +178,22 @@ public final class Tiles {
 		oldids.set(55, "torch black wool");
 	}
 	
-	private static int overflowCheck = 0;
 	public static Tile get(String name) {
-		//System.out.println("Getting from tile list: " + name);
-		
-		name = name.toUpperCase();
-		
-		overflowCheck++;
-		
-		if(overflowCheck > 50) {
-			System.out.println("STACKOVERFLOW prevented in Tiles.get(), on: " + name);
-			System.exit(1);
-		}
-		
-		//System.out.println("Fetching tile " + name);
+		Tile getting = lookups.get(name);
+		if(getting != null) return getting;
 		
-		Tile getting = null;
-		
-		boolean isTorch = false;
-		if(name.startsWith("TORCH ")) {
-			isTorch = true;
-			name = name.substring(6); // cuts off torch prefix.
-		}
-
-		if(name.contains("_")) {
-			name = name.substring(0, name.indexOf("_"));
-		}
-		
-		for(Tile t: tiles) {
-			if(t == null) continue;
-			if(t.name.equals(name)) {
-				getting = t;
-				break;
-			}
-		}
+		String key = name.toUpperCase();
+		if(key.contains("_"))
+			key = key.substring(0, key.indexOf("_")); // cuts off the data suffix.
 		
+		getting = names.get(key);
 		if(getting == null) {
-			System.out.println("TILES.GET: Invalid tile requested: " + name);
-			getting = tiles.get(0);
+			boolean isTorch = key.startsWith("TORCH ");
+			System.out.println("TILES.GET: Invalid tile requested: " + (isTorch ? key.substring(6) : key));
+			return isTorch ? tiles[128] : tiles[0]; // a torch on grass, or grass.
 		}
 		
-		if(isTorch) {
-			getting = TorchTile.getTorchTile(getting);
-		}
-		
-		overflowCheck = 0;
+		lookups.put(name, getting);
 		return getting;
 	}
 	
@@ -221,20 +201,15 @@ public final class Tiles {
 		//System.out.println("Requesting tile by id: " + id);
 		if(id < 0) id += 256;
 		
-		if(tiles.get(id) != null) {
-			return tiles.get(id);
-		}
-		else if(id >= 128) {
-			return TorchTile.getTorchTile(get(id-128));
-		}
-		else {
-			System.out.println("TILES.GET: Unknown tile id requested: " + id);
-			return tiles.get(0);
-		}
+		if(tiles[id] != null)
+			return tiles[id];
+		
+		System.out.println("TILES.GET: Unknown tile id requested: " + id);
+		return id >= 128 ? tiles[128] : tiles[0];
 	}
 	
 	public static boolean containsTile(int id) {
-		return tiles.get(id) != null;
+		return tiles[id] != null;
 	}
 	
 	public static String getName(String descriptName) {
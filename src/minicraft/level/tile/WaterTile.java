@@ -19,6 +19,7 @@ public class WaterTile extends Tile {
 		super(name, (ConnectorSprite)null);
 		csprite = sprite;
 		connectsToFluid = true;
+		animated = true;
 	}
 	
 	public void render(Screen screen, Level level, int x, int y) {
@@ -0,0 +1,120 @@
+package minicraft.network;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import minicraft.core.World;
+import minicraft.entity.furniture.Bed;
+import minicraft.entity.mob.RemotePlayer;
+import minicraft.level.Level;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps track of which clients are near which parts of each level, so the server can find the clients that an entity change
+ * concerns without checking all of them. Each level is split into cells of 16x16 tiles, and each client is subscribed
+ * to the cells that its player's tracking area overlaps. The subscriber list of a cell is replaced rather than changed,
+ * so it can be looped over without copying it.
+ */
+class InterestGrid {
+
+	static final int CELL_SHIFT = 4; // cells are 16x16 tiles.
+
+	private static final MinicraftServerThread[] NONE = new MinicraftServerThread[0];
+
+	private final MinicraftServerThread[][][] cells = new MinicraftServerThread[World.levels.length][][]; // by level index, then cell; made when first needed.
+	private final int[] cellWidths = new int[World.levels.length];
+	private final Map<MinicraftServerThread, int[]> subscriptions = new IdentityHashMap<>(); // level index, then the first and last cell x and y, for each client.
+
+	/** Subscribes the client of the given thread to the cells around its player, if it has moved to different ones. */
+	synchronized void update(MinicraftServerThread thread) {
+		RemotePlayer client = thread.getClient();
+		Level level = client.getLevel();
+		if(level == null && Bed.inBed(client))
+			level = Bed.getBedLevel(client); // this is how RemotePlayer.shouldSync() sees it, too.
+
+		int[] old = subscriptions.get(thread);
+		int lvlidx = level == null ? -1 : World.lvlIdx(level.depth);
+		if(lvlidx < 0 || lvlidx >= cells.length || World.levels[lvlidx] != level) {
+			if(old != null)
+				remove(thread);
+			return;
+		}
+
+		if(cells[lvlidx] == null) {
+			cellWidths[lvlidx] = (level.w >> CELL_SHIFT) + 1;
+			cells[lvlidx] = new MinicraftServerThread[cellWidths[lvlidx] * ((level.h >> CELL_SHIFT) + 1)][];
+		}
+
+		int xt = client.x >> 4, yt = client.y >> 4;
+		int xr = RemotePlayer.xSyncRadius + RemotePlayer.entityTrackingBuffer;
+		int yr = RemotePlayer.ySyncRadius + RemotePlayer.entityTrackingBuffer;
+		int cx0 = Math.max(0, xt - xr) >> CELL_SHIFT, cy0 = Math.max(0, yt - yr) >> CELL_SHIFT;
+		int cx1 = Math.min(level.w - 1, xt + xr) >> CELL_SHIFT, cy1 = Math.min(level.h - 1, yt + yr) >> CELL_SHIFT;
+		if(old != null && old[0] == lvlidx && old[1] == cx0 && old[2] == cy0 && old[3] == cx1 && old[4] == cy1)
+			return; // still in the same cells.
+
+		int[] area = {lvlidx, cx0, cy0, cx1, cy1};
+
+		if(old != null)
+			remove(thread);
+		if(area[1] > area[3] || area[2] > area[4])
+			return; // the player is off of the level somehow.
+
+		for(int cy = area[2]; cy <= area[4]; cy++) {
+			for(int cx = area[1]; cx <= area[3]; cx++) {
+				int cell = cx + cy * cellWidths[lvlidx];
+				MinicraftServerThread[] subs = cells[lvlidx][cell];
+				if(subs == null) subs = NONE;
+				subs = Arrays.copyOf(subs, subs.length + 1);
+				subs[subs.length - 1] = thread;
+				cells[lvlidx][cell] = subs;
+			}
+		}
+		subscriptions.put(thread, area);
+	}
+
+	synchronized void remove(MinicraftServerThread thread) {
+		int[] area = subscriptions.remove(thread);
+		if(area == null) return;
+
+		MinicraftServerThread[][] lvlcells = cells[area[0]];
+		for(int cy = area[2]; cy <= area[4]; cy++) {
+			for(int cx = area[1]; cx <= area[3]; cx++) {
+				int cell = cx + cy * cellWidths[area[0]];
+				MinicraftServerThread[] subs = lvlcells[cell];
+				for(int i = 0; i < subs.length; i++) {
+					if(subs[i] == thread) {
+						MinicraftServerThread[] remaining = new MinicraftServerThread[subs.length - 1];
+						System.arraycopy(subs, 0, remaining, 0, i);
+						System.arraycopy(subs, i + 1, remaining, i, subs.length - i - 1);
+						lvlcells[cell] = remaining.length == 0 ? null : remaining;
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	synchronized void clear() {
+		Arrays.fill(cells, null);
+		subscriptions.clear();
+	}
+
+	/**
+	 * Returns the clients whose tracking area might include the given tile. This is a superset; the clients
+	 * still have to be checked with RemotePlayer.shouldSync() or shouldTrack(). The array must not be changed.
+	 */
+	synchronized MinicraftServerThread[] getSubscribers(@Nullable Level level, int xt, int yt) {
+		if(level == null) return NONE;
+		int lvlidx = World.lvlIdx(level.depth);
+		if(lvlidx < 0 || lvlidx >= cells.length || cells[lvlidx] == null || World.levels[lvlidx] != level)
+			return NONE;
+		if(xt < 0 || yt < 0 || xt >= level.w || yt >= level.h)
+			return NONE;
+
+		MinicraftServerThread[] subs = cells[lvlidx][(xt >> CELL_SHIFT) + (yt >> CELL_SHIFT) * cellWidths[lvlidx]];
+		return subs == null ? NONE : subs;
+	}
+}
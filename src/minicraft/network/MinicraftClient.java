@@ -5,9 +5,13 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import minicraft.core.Game;
 import minicraft.core.Network;
@@ -52,6 +56,9 @@ public class MinicraftClient extends MinicraftConnection {
 	
 	private HashMap<Integer, Long> entityRequests = new HashMap<>();
 	
+	private Inflater chunkInflater; // for streamed level chunks.
+	private byte[] chunkBuffer;
+	
 	private int serverPlayerCount = 0;
 	
 	@Nullable
@@ -107,7 +114,7 @@ public class MinicraftClient extends MinicraftConnection {
 		curState = newState;
 		
 		switch(newState) {
-			case LOGIN: sendData(InputType.LOGIN, ((RemotePlayer)Game.player).getUsername()+";"+Game.VERSION); break;
+			case LOGIN: sendData(InputType.LOGIN, ((RemotePlayer)Game.player).getUsername()+";"+Game.VERSION+(binaryFramesEnabled?";"+BINARY_FRAMES_CAPABILITY:"")); break;
 			
 			case LOADING:
 				Game.setMenu(menu);
@@ -205,46 +212,17 @@ public class MinicraftClient extends MinicraftConnection {
 				World.currentLevel = info[3];
 				Game.player.x = info[4];
 				Game.player.y = info[5];
+				if(info.length > 6)
+					setBinaryFrames(info[6] == 1);
 				return true;
 			
 			case TILES:
-				if(curState != State.LOADING) { // ignore
-					if (Game.debug) System.out.println("ignoring level tile data because client state is not LOADING: " + curState);
-					return false;
-				}
-				if (Game.debug) System.out.println("CLIENT: received tiles for level "+World.currentLevel);
-				/// receive tiles.
-				Level level = World.levels[World.currentLevel];
-				if(level == null) {
-					int lvldepth = World.idxToDepth[World.currentLevel];
-					World.levels[World.currentLevel] = level = new Level(World.lvlw, World.lvlh, lvldepth, World.levels[World.lvlIdx(lvldepth+1)], false);
-				}
-				
 				String[] tilestrs = alldata.split(",");
 				byte[] tiledata = new byte[tilestrs.length];
 				for(int i = 0; i < tiledata.length; i++)
 					tiledata[i] = Byte.parseByte(tilestrs[i]);
 				
-				//System.out.println("TILE DATA ARRAY AS RECEIVED BY CLIENT, DECODED BACK TO NUMBERS (length="+tiledata.length+"):");
-				//System.out.println(Arrays.toString(tiledata));
-				
-				if(tiledata.length / 2 > level.tiles.length) {
-					System.err.println("CLIENT ERROR: received level tile data is too long for world size; level.tiles.length="+level.tiles.length+", tiles in data: " + (tiledata.length / 2) + ". Will truncate tile loading.");
-				}
-				
-				for(int i = 0; i < tiledata.length/2 && i < level.tiles.length; i++) {
-					level.tiles[i] = tiledata[i*2];
-					level.data[i] = tiledata[i*2+1];
-				}
-				
-				menu.setLoadingMessage("Entities");
-				
-				if(World.onChangeAction != null) {
-					World.onChangeAction.act();
-					World.onChangeAction = null;
-				}
-				
-				return true;
+				return loadTiles(tiledata);
 			
 			case ENTITIES:
 				if(curState != State.LOADING) {// ignore
@@ -269,100 +247,17 @@ public class MinicraftClient extends MinicraftConnection {
 				return true;
 			
 			case TILE:
-				Level theLevel = World.levels[Integer.parseInt(data[0])];
-				if(theLevel == null)
-					return false; // ignore, this is for an unvisited level.
-				int pos = Integer.parseInt(data[1]);
-				theLevel.tiles[pos] = Byte.parseByte(data[2]);
-				theLevel.data[pos] = Byte.parseByte(data[3]);
-				//if (Game.debug) System.out.println("CLIENT: updated tile on lvl " + theLevel.depth + " to " + Tiles.get(theLevel.tiles[pos]).name);
-				return true;
+				return updateTile(Integer.parseInt(data[0]), Integer.parseInt(data[1]), Byte.parseByte(data[2]), Byte.parseByte(data[3]));
 			
 			case ADD:
-				if(curState == State.LOADING)
-					System.out.println("CLIENT: received entity addition while loading level");
-				
-				//if (Game.debug) System.out.println("CLIENT: received entity addition: " + alldata);
-				
-				if(alldata.length() == 0) {
-					System.err.println("CLIENT WARNING: received entity addition is blank...");
-					return false;
-				}
-				
-				Entity addedEntity = Load.loadEntity(alldata, false);
-				if(addedEntity != null) {
-					if(addedEntity.eid == Game.player.eid/* && Game.player.getLevel() == null*/) {
-						if (Game.debug) System.out.println("CLIENT: added main game player back to level based on add packet");
-						World.levels[Game.currentLevel].add(Game.player);
-						Bed.removePlayer(Game.player);
-					}
-					
-					if(entityRequests.containsKey(addedEntity.eid))
-						entityRequests.remove(addedEntity.eid);
-				}
-				
-				return true;
+				return addEntity(alldata);
 			
 			case REMOVE:
-				if(curState == State.LOADING)
-					System.out.println("CLIENT: received entity removal while loading level");
-				
-				int eid = Integer.parseInt(data[0]);
-				Integer entityLevelDepth;
-				if(data.length > 1)
-					entityLevelDepth = Integer.parseInt(data[1]);
-				else
-					entityLevelDepth = null;
-				
-				Entity toRemove = Network.getEntity(eid);
-				//if (Game.debug) System.out.println("CLIENT: received entity removal: " + toRemove);
-				if(toRemove != null) {
-					if(entityLevelDepth != null && toRemove.getLevel() != null && toRemove.getLevel().depth != entityLevelDepth) {
-						if(Game.debug) System.out.println("CLIENT: not removing entity "+toRemove+" because it is not on the specified level depth, "+entityLevelDepth+"; current depth = "+toRemove.getLevel().depth+". Removing from specified level only...");
-						Level l = World.levels[World.lvlIdx(entityLevelDepth)];
-						if(l != null)
-							l.remove(toRemove);
-					}
-					else
-						toRemove.remove();
-					return true;
-				}
-				return false;
+				return removeEntity(Integer.parseInt(data[0]), data.length > 1 ? Integer.parseInt(data[1]) : null);
 			
 			case ENTITY:
-				// these shouldn't occur while loading, becuase the server caches them. But just in case, let's make sure.
-				if(curState == State.LOADING)
-					System.out.println("CLIENT received entity update while loading level");
-				
 				int entityid = Integer.parseInt(alldata.substring(0, alldata.indexOf(";")));
-				//if (Game.debug) System.out.println("CLIENT: received entity update for: " + entityid);
-				String updates = alldata.substring(alldata.indexOf(";")+1);
-				if(entityid == Game.player.eid) {
-					Game.player.update(updates);
-					return true;
-				}
-				Entity entity = Network.getEntity(entityid);
-				if(entity == null) {
-					//System.err.println("CLIENT: couldn't find entity specified to update: " + entityid + "; could not apply updates: " + updates);
-					if(entityRequests.containsKey(entityid) && (System.nanoTime() - entityRequests.get(entityid))/1E8 > 15L) { // this will make it so that there has to be at least 1.5 seconds between each time a certain entity is requested. Also, it won't request the entity the first time around; it has to wait a bit after the first attempt before it will actually request it.
-						sendData(InputType.ENTITY, String.valueOf(entityid));
-						entityRequests.put(entityid, System.nanoTime());
-					}
-					else if(!entityRequests.containsKey(entityid))
-						entityRequests.put(entityid, (long)(System.nanoTime() - 7L*1E8)); // should "advance" the time so that it only takes 0.8 seconds after the first attempt to issue the actual request.
-					return false;
-				}
-				else if(!((RemotePlayer)Game.player).shouldSync(entity.x >> 4, entity.y >> 4, entity.getLevel())) {
-					// the entity is out of sync range; but not necessarily out of the tracking range, so it's *not* removed from the level here.
-					return false;
-				}
-				else if(!((RemotePlayer)Game.player).shouldTrack(entity.x >> 4, entity.y >> 4, entity.getLevel())) {
-					// the entity is out of tracking range, and so may as well be removed from the level.
-					entity.remove();
-					return false;
-				}
-				entity.update(updates);
-				return true;
+				return updateEntity(entityid, alldata.substring(alldata.indexOf(";")+1));
 			
 			case PLAYER:
 				//if (Game.debug) System.out.println("CLIENT: received player packet");
@@ -471,6 +366,272 @@ public class MinicraftClient extends MinicraftConnection {
 		return false; // this isn't reached by anything, unless it's some packet type we aren't looking for. So in that case, return false.
 	}
 	
+	/** Decodes the binary frames that have their own encoding; see the matching send methods in MinicraftServerThread. */
+	@Override
+	protected boolean parseBinaryPacket(InputType inType, ByteBuffer data) {
+		switch(inType) {
+			case TILE:
+				// one level index, then any number of tiles.
+				int lvlidx = data.get();
+				boolean updated = false;
+				while(data.remaining() >= 6)
+					updated = updateTile(lvlidx, data.getInt(), data.get(), data.get());
+				return updated;
+			
+			case TILES:
+				return loadChunk(data);
+			
+			case ADD:
+				return addEntity(decodeEntityAddition(data));
+			
+			case REMOVE:
+				int eid = data.getInt();
+				return removeEntity(eid, data.remaining() >= 4 ? data.getInt() : null);
+			
+			case ENTITY:
+				int entityid = data.getInt();
+				return updateEntity(entityid, new String(data.array(), data.position(), data.remaining(), StandardCharsets.UTF_8));
+			
+			case ENTITY_BATCH:
+				// the id, delta length, and binary deltas of each entity.
+				while(data.remaining() >= 8) {
+					int id = data.getInt();
+					int length = data.getInt();
+					ByteBuffer deltas = ByteBuffer.wrap(data.array(), data.arrayOffset() + data.position(), length);
+					data.position(data.position() + length);
+					
+					Entity entity = getEntityToUpdate(id);
+					if(entity != null)
+						entity.update(deltas);
+				}
+				return true;
+		}
+		
+		return super.parseBinaryPacket(inType, data); // the rest are sent as text in a frame.
+	}
+	
+	/// turns an ADD frame back into the entity string that Load.loadEntity() reads.
+	private static String decodeEntityAddition(ByteBuffer data) {
+		int eid = data.getInt();
+		int x = data.getInt();
+		int y = data.getInt();
+		int lvlidx = data.get();
+		int nameLen = data.getShort() & 0xFFFF;
+		String name = new String(data.array(), data.position(), nameLen, StandardCharsets.UTF_8);
+		data.position(data.position() + nameLen);
+		
+		StringBuilder entityData = new StringBuilder(name).append('[').append(x).append(':').append(y).append(':').append(eid);
+		if(data.get() != 0)
+			entityData.append(':').append(new String(data.array(), data.position(), data.remaining(), StandardCharsets.UTF_8));
+		return entityData.append(':').append(lvlidx).append(']').toString();
+	}
+	
+	private Level getLoadingLevel(int lvlidx) {
+		Level level = World.levels[lvlidx];
+		if(level == null) {
+			int lvldepth = World.idxToDepth[lvlidx];
+			World.levels[lvlidx] = level = new Level(World.lvlw, World.lvlh, lvldepth, World.levels[World.lvlIdx(lvldepth+1)], false);
+		}
+		return level;
+	}
+	
+	private void finishLoadingTiles() {
+		menu.setLoadingMessage("Entities");
+		
+		if(World.onChangeAction != null) {
+			World.onChangeAction.act();
+			World.onChangeAction = null;
+		}
+	}
+	
+	/// reads one chunk of a streamed level; see MinicraftServerThread.sendNextChunk(). The chunks after the nearby ones arrive once the game has started.
+	private boolean loadChunk(ByteBuffer data) {
+		if(curState != State.LOADING && curState != State.PLAY) { // ignore
+			if (Game.debug) System.out.println("ignoring level chunk because client state is not LOADING or PLAY: " + curState);
+			return false;
+		}
+		
+		int lvlidx = data.get();
+		int cx = data.getShort(), cy = data.getShort();
+		int flags = data.get();
+		int rawLen = data.getInt();
+		if(lvlidx < 0 || lvlidx >= World.levels.length) {
+			System.err.println("CLIENT ERROR: received level chunk for nonexistent level " + lvlidx);
+			return false;
+		}
+		
+		Level level = getLoadingLevel(lvlidx);
+		int x0 = cx * LEVEL_CHUNK_SIZE, y0 = cy * LEVEL_CHUNK_SIZE;
+		int width = Math.min(LEVEL_CHUNK_SIZE, level.w - x0);
+		int height = Math.min(LEVEL_CHUNK_SIZE, level.h - y0);
+		int area = width * height;
+		if(width <= 0 || height <= 0 || rawLen != area * 2) {
+			System.err.println("CLIENT ERROR: received level chunk ("+cx+","+cy+") does not fit the world size; ignoring it.");
+			return false;
+		}
+		
+		if(chunkInflater == null) {
+			chunkInflater = new Inflater();
+			chunkBuffer = new byte[LEVEL_CHUNK_SIZE * LEVEL_CHUNK_SIZE * 2];
+		}
+		chunkInflater.reset();
+		chunkInflater.setInput(data.array(), data.arrayOffset() + data.position(), data.remaining());
+		try {
+			int read = 0;
+			while(read < rawLen && !chunkInflater.finished()) {
+				int n = chunkInflater.inflate(chunkBuffer, read, rawLen - read);
+				if(n == 0 && (chunkInflater.needsInput() || chunkInflater.needsDictionary())) break;
+				read += n;
+			}
+			if(read != rawLen) {
+				System.err.println("CLIENT ERROR: level chunk ("+cx+","+cy+") is truncated; ignoring it.");
+				return false;
+			}
+		} catch(DataFormatException ex) {
+			System.err.println("CLIENT ERROR: could not decompress level chunk ("+cx+","+cy+"):");
+			ex.printStackTrace();
+			return false;
+		}
+		
+		for(int y = 0; y < height; y++) {
+			System.arraycopy(chunkBuffer, y * width, level.tiles, x0 + (y0 + y) * level.w, width);
+			System.arraycopy(chunkBuffer, area + y * width, level.data, x0 + (y0 + y) * level.w, width);
+		}
+		level.tilesChanged(x0, y0, x0 + width - 1, y0 + height - 1);
+		
+		if((flags & CHUNK_LAST_NEARBY) != 0 && curState == State.LOADING) {
+			if (Game.debug) System.out.println("CLIENT: received nearby chunks for level "+lvlidx);
+			finishLoadingTiles();
+		}
+		
+		return true;
+	}
+	
+	private boolean loadTiles(byte[] tiledata) {
+		if(curState != State.LOADING) { // ignore
+			if (Game.debug) System.out.println("ignoring level tile data because client state is not LOADING: " + curState);
+			return false;
+		}
+		if (Game.debug) System.out.println("CLIENT: received tiles for level "+World.currentLevel);
+		/// receive tiles.
+		Level level = getLoadingLevel(World.currentLevel);
+		
+		//System.out.println("TILE DATA ARRAY AS RECEIVED BY CLIENT, DECODED BACK TO NUMBERS (length="+tiledata.length+"):");
+		//System.out.println(Arrays.toString(tiledata));
+		
+		if(tiledata.length / 2 > level.tiles.length) {
+			System.err.println("CLIENT ERROR: received level tile data is too long for world size; level.tiles.length="+level.tiles.length+", tiles in data: " + (tiledata.length / 2) + ". Will truncate tile loading.");
+		}
+		
+		for(int i = 0; i < tiledata.length/2 && i < level.tiles.length; i++) {
+			level.tiles[i] = tiledata[i*2];
+			level.data[i] = tiledata[i*2+1];
+		}
+		level.tilesChanged(0, 0, level.w - 1, level.h - 1);
+		
+		finishLoadingTiles();
+		
+		return true;
+	}
+	
+	private boolean updateTile(int lvlidx, int pos, byte id, byte tdata) {
+		Level theLevel = World.levels[lvlidx];
+		if(theLevel == null)
+			return false; // ignore, this is for an unvisited level.
+		theLevel.tiles[pos] = id;
+		theLevel.data[pos] = tdata;
+		theLevel.tilesChanged(pos % theLevel.w, pos / theLevel.w, pos % theLevel.w, pos / theLevel.w);
+		//if (Game.debug) System.out.println("CLIENT: updated tile on lvl " + theLevel.depth + " to " + Tiles.get(theLevel.tiles[pos]).name);
+		return true;
+	}
+	
+	private boolean addEntity(String entityData) {
+		if(curState == State.LOADING)
+			System.out.println("CLIENT: received entity addition while loading level");
+		
+		//if (Game.debug) System.out.println("CLIENT: received entity addition: " + entityData);
+		
+		if(entityData.length() == 0) {
+			System.err.println("CLIENT WARNING: received entity addition is blank...");
+			return false;
+		}
+		
+		Entity addedEntity = Load.loadEntity(entityData, false);
+		if(addedEntity != null) {
+			if(addedEntity.eid == Game.player.eid/* && Game.player.getLevel() == null*/) {
+				if (Game.debug) System.out.println("CLIENT: added main game player back to level based on add packet");
+				World.levels[Game.currentLevel].add(Game.player);
+				Bed.removePlayer(Game.player);
+			}
+			
+			if(entityRequests.containsKey(addedEntity.eid))
+				entityRequests.remove(addedEntity.eid);
+		}
+		
+		return true;
+	}
+	
+	private boolean removeEntity(int eid, @Nullable Integer entityLevelDepth) {
+		if(curState == State.LOADING)
+			System.out.println("CLIENT: received entity removal while loading level");
+		
+		Entity toRemove = Network.getEntity(eid);
+		//if (Game.debug) System.out.println("CLIENT: received entity removal: " + toRemove);
+		if(toRemove != null) {
+			if(entityLevelDepth != null && toRemove.getLevel() != null && toRemove.getLevel().depth != entityLevelDepth) {
+				if(Game.debug) System.out.println("CLIENT: not removing entity "+toRemove+" because it is not on the specified level depth, "+entityLevelDepth+"; current depth = "+toRemove.getLevel().depth+". Removing from specified level only...");
+				Level l = World.levels[World.lvlIdx(entityLevelDepth)];
+				if(l != null)
+					l.remove(toRemove);
+			}
+			else
+				toRemove.remove();
+			return true;
+		}
+		return false;
+	}
+	
+	private boolean updateEntity(int entityid, String updates) {
+		Entity entity = getEntityToUpdate(entityid);
+		if(entity == null)
+			return false;
+		entity.update(updates);
+		return true;
+	}
+	
+	/// finds the entity an update is for; returns null if it shouldn't be updated. May request or remove the entity.
+	@Nullable
+	private Entity getEntityToUpdate(int entityid) {
+		// these shouldn't occur while loading, becuase the server caches them. But just in case, let's make sure.
+		if(curState == State.LOADING)
+			System.out.println("CLIENT received entity update while loading level");
+		
+		//if (Game.debug) System.out.println("CLIENT: received entity update for: " + entityid);
+		if(entityid == Game.player.eid)
+			return Game.player;
+		Entity entity = Network.getEntity(entityid);
+		if(entity == null) {
+			//System.err.println("CLIENT: couldn't find entity specified to update: " + entityid);
+			if(entityRequests.containsKey(entityid) && (System.nanoTime() - entityRequests.get(entityid))/1E8 > 15L) { // this will make it so that there has to be at least 1.5 seconds between each time a certain entity is requested. Also, it won't request the entity the first time around; it has to wait a bit after the first attempt before it will actually request it.
+				sendData(InputType.ENTITY, String.valueOf(entityid));
+				entityRequests.put(entityid, System.nanoTime());
+			}
+			else if(!entityRequests.containsKey(entityid))
+				entityRequests.put(entityid, (long)(System.nanoTime() - 7L*1E8)); // should "advance" the time so that it only takes 0.8 seconds after the first attempt to issue the actual request.
+			return null;
+		}
+		else if(!((RemotePlayer)Game.player).shouldSync(entity.x >> 4, entity.y >> 4, entity.getLevel())) {
+			// the entity is out of sync range; but not necessarily out of the tracking range, so it's *not* removed from the level here.
+			return null;
+		}
+		else if(!((RemotePlayer)Game.player).shouldTrack(entity.x >> 4, entity.y >> 4, entity.getLevel())) {
+			// the entity is out of tracking range, and so may as well be removed from the level.
+			entity.remove();
+			return null;
+		}
+		return entity;
+	}
+	
 	/// the below methods are all about sending data to the server, *not* setting any game values.
 	
 	//public void move(Player player) { move(player, player.x, player.y); }
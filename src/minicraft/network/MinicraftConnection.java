@@ -1,10 +1,13 @@
 package minicraft.network;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 import minicraft.core.Game;
@@ -15,10 +18,15 @@ import org.jetbrains.annotations.Nullable;
 
 public abstract class MinicraftConnection extends Thread implements MinicraftProtocol {
 	
-	private PrintWriter out;
-	private BufferedReader in;
+	public static boolean binaryFramesEnabled = true; // can be turned off with --textprotocol, so that only the original text packets are sent.
+	
+	private DataOutputStream out;
+	private DataInputStream in;
 	private Socket socket = null;
 	
+	private volatile boolean binaryFrames = false; // whether packets are sent as binary frames; packets of either kind are always accepted.
+	private byte[] textBuffer = new byte[256];
+	
 	protected MinicraftConnection(String threadName, @Nullable Socket socket) {
 		super(threadName);
 		this.socket = socket;
@@ -26,8 +34,8 @@ public abstract class MinicraftConnection extends Thread implements MinicraftPro
 		if(socket == null) return;
 		
 		try {
-			in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-			out = new PrintWriter(socket.getOutputStream(), true);
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
 		} catch (IOException ex) {
 			System.err.println("failed to initialize i/o streams for socket:");
 			ex.printStackTrace();
@@ -40,42 +48,26 @@ public abstract class MinicraftConnection extends Thread implements MinicraftPro
 	public void run() {
 		if (Game.debug) System.out.println("starting " + this);
 		
-		StringBuilder currentData = new StringBuilder();
-		
 		while(isConnected()) {
-			int read = -2;
+			int read;
 			
 			try {
 				read = in.read();
+				
+				if(read == BINARY_FRAME)
+					readBinaryFrame();
+				else if(read > 0) // the null character separates text packets, so sequential null characters are ignored.
+					readTextPacket(read);
 			} catch (IOException ex) {
-				System.err.println(this + " had a problem reading its input stream (will continue trying): " + ex.getMessage());
+				System.err.println(this + " had a problem reading its input stream: " + ex.getMessage());
 				ex.printStackTrace();
+				read = -2;
 			}
 			
 			if(read < 0) {
 				if (Game.debug) System.out.println(this + " reached end of input stream.");
 				break;
 			}
-			
-			//if (Game.debug) System.out.println(this + " successfully read character from input stream: " + read);
-			
-			if(read > 0) { // if it is valid character that is not the null character, then add it to the string.
-				currentData.append( (char)read );
-			}
-			else if(currentData.length() > 0) { // read MUST equal 0 at this point, aka a null character; the if statement makes it ignore sequential null characters.
-				
-				//if (Game.debug) System.out.println(this + " completed data packet: " + currentData);
-				
-				InputType inType = MinicraftProtocol.getInputType(currentData.charAt(0));
-				
-				if(inType == null)
-					System.err.println("SERVER: invalid packet received; input type is not valid.");
-				else
-					parsePacket(inType, currentData.substring(1));
-				
-				currentData = new StringBuilder();
-				//if (Game.debug) System.out.println(this + " cleared currentData.");
-			}
 		}
 		
 		if (Game.debug) System.out.println("run loop ended for " + this + "; ending connection.");
@@ -83,17 +75,105 @@ public abstract class MinicraftConnection extends Thread implements MinicraftPro
 		endConnection();
 	}
 	
+	/// reads a text packet: the input type character (already read), then the data up to the next null character.
+	private void readTextPacket(int typeChar) throws IOException {
+		int length = 0;
+		int read;
+		while((read = in.read()) > 0) {
+			if(length == textBuffer.length)
+				textBuffer = Arrays.copyOf(textBuffer, textBuffer.length * 2);
+			textBuffer[length++] = (byte) read;
+		}
+		if(read < 0)
+			throw new IOException("stream ended in the middle of a packet");
+		
+		InputType inType = MinicraftProtocol.getInputType((char) typeChar);
+		
+		if(inType == null)
+			System.err.println(this + ": invalid packet received; input type is not valid.");
+		else
+			parsePacket(inType, new String(textBuffer, 0, length, StandardCharsets.UTF_8));
+	}
+	
+	/// reads a binary frame: the input type ordinal, the payload length, and the payload (the frame marker is already read).
+	private void readBinaryFrame() throws IOException {
+		int typeIdx = in.readUnsignedByte();
+		int length = in.readInt();
+		if(length < 0)
+			throw new IOException("invalid frame length " + length);
+		
+		byte[] payload = new byte[length];
+		in.readFully(payload);
+		
+		if(typeIdx >= InputType.values.length) {
+			System.err.println(this + ": invalid frame received; input type is not valid: " + typeIdx);
+			return;
+		}
+		
+		parseBinaryPacket(InputType.values[typeIdx], ByteBuffer.wrap(payload));
+	}
+	
 	protected abstract boolean parsePacket(InputType inType, String data);
 	
+	/**
+	 * Handles a binary frame. Packet types without a binary encoding of their own carry their usual text data
+	 * as UTF-8, so by default this just decodes it and hands it to parsePacket().
+	 */
+	protected boolean parseBinaryPacket(InputType inType, ByteBuffer data) {
+		return parsePacket(inType, new String(data.array(), data.position(), data.remaining(), StandardCharsets.UTF_8));
+	}
+	
+	/** Whether packets to the other side are sent as binary frames. Only true once both sides have agreed to it. */
+	public boolean usesBinaryFrames() { return binaryFrames; }
+	protected void setBinaryFrames(boolean binaryFrames) {
+		if(Game.debug && binaryFrames != this.binaryFrames) System.out.println(this + ": " + (binaryFrames ? "switching to binary frames" : "switching to text packets"));
+		this.binaryFrames = binaryFrames;
+	}
+	
 	protected void sendData(InputType inType, String data) {
 		if(socket == null) return;
 		
-		char inTypeChar = (char) (inType.ordinal()+1);
 		//if (Game.debug && inType == InputType.TILES) System.out.println(this + ": printing " + inType + " data:");
+		if(binaryFrames) {
+			sendFrame(inType, data.getBytes(StandardCharsets.UTF_8), null);
+			return;
+		}
+		
 		if(data.contains("\0")) System.err.println("WARNING from "+this+": data to send contains a null character. Not sending data.");
 		else {
-			out.print(inTypeChar + data + '\0');
-			out.flush();
+			char inTypeChar = (char) (inType.ordinal()+1);
+			byte[] bytes = (inTypeChar + data + '\0').getBytes(StandardCharsets.UTF_8);
+			try {
+				synchronized (out) {
+					out.write(bytes);
+					out.flush();
+				}
+			} catch(IOException ex) {
+				System.err.println(this + " failed to send " + inType + " packet: " + ex.getMessage());
+			}
+		}
+	}
+	
+	/** Sends a payload in a binary frame. Should only be used when usesBinaryFrames() is true. */
+	protected void sendData(InputType inType, ByteBuffer payload) {
+		if(socket == null) return;
+		
+		sendFrame(inType, payload.array(), payload);
+	}
+	
+	private void sendFrame(InputType inType, byte[] bytes, @Nullable ByteBuffer buffer) {
+		int offset = buffer == null ? 0 : buffer.arrayOffset() + buffer.position();
+		int length = buffer == null ? bytes.length : buffer.remaining();
+		try {
+			synchronized (out) {
+				out.writeByte(BINARY_FRAME);
+				out.writeByte(inType.ordinal());
+				out.writeInt(length);
+				out.write(bytes, offset, length);
+				out.flush();
+			}
+		} catch(IOException ex) {
+			System.err.println(this + " failed to send " + inType + " frame: " + ex.getMessage());
 		}
 	}
 	
@@ -8,12 +8,19 @@ public interface MinicraftProtocol {
 	
 	int PORT = 4225;
 	
+	int BINARY_FRAME = 0xFF; // first byte of a binary frame. Text packets start with their input type character, which is never this.
+	String BINARY_FRAMES_CAPABILITY = "frames"; // added to the LOGIN packet by clients that can send and receive binary frames.
+	
+	int LEVEL_CHUNK_SIZE = 32; // levels are streamed in TILES frames of this many tiles square.
+	int CHUNK_HEADER_SIZE = 10; // level index, chunk x and y, flags, raw length.
+	int CHUNK_LAST_NEARBY = 1; // flag on the last chunk the client needs before it can start playing.
+	
 	enum InputType {
-		INVALID, PING, USERNAMES, LOGIN, GAME, INIT, LOAD, TILES, ENTITIES, TILE, ENTITY, PLAYER, MOVE, ADD, REMOVE, DISCONNECT, SAVE, NOTIFY, INTERACT, PUSH, PICKUP, CHESTIN, CHESTOUT, ADDITEMS, BED, POTION, HURT, DIE, RESPAWN, DROP, STAMINA, SHIRT, STOPFISHING;
+		INVALID, PING, USERNAMES, LOGIN, GAME, INIT, LOAD, TILES, ENTITIES, TILE, ENTITY, PLAYER, MOVE, ADD, REMOVE, DISCONNECT, SAVE, NOTIFY, INTERACT, PUSH, PICKUP, CHESTIN, CHESTOUT, ADDITEMS, BED, POTION, HURT, DIE, RESPAWN, DROP, STAMINA, SHIRT, STOPFISHING, ENTITY_BATCH;
 		
 		public static final InputType[] values = InputType.values();
-		public static final List<InputType> serverOnly = Arrays.asList(INIT, TILES, ENTITIES, ADD, REMOVE, HURT, GAME, ADDITEMS, STAMINA, STOPFISHING);
-		public static final List<InputType> entityUpdates = Arrays.asList(ENTITY, ADD, REMOVE);
+		public static final List<InputType> serverOnly = Arrays.asList(INIT, TILES, ENTITIES, ADD, REMOVE, HURT, GAME, ADDITEMS, STAMINA, STOPFISHING, ENTITY_BATCH);
+		public static final List<InputType> entityUpdates = Arrays.asList(ENTITY, ENTITY_BATCH, ADD, REMOVE);
 		public static final List<InputType> tileUpdates = Collections.singletonList(TILE);
 	}
 	
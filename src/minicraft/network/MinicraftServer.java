@@ -33,6 +33,7 @@ import minicraft.item.PotionType;
 import minicraft.item.StackableItem;
 import minicraft.item.UnknownItem;
 import minicraft.level.Level;
+import minicraft.level.ParallelTicker;
 import minicraft.level.tile.Tile;
 import minicraft.saveload.Load;
 import minicraft.saveload.Save;
@@ -52,6 +53,7 @@ public class MinicraftServer extends Thread implements MinicraftProtocol {
 	private static final int UPDATE_INTERVAL = 10; // measured in seconds
 	
 	private List<MinicraftServerThread> threadList = Collections.synchronizedList(new ArrayList<>());
+	private final InterestGrid interestGrid = new InterestGrid(); // which clients are near which parts of each level.
 	private ServerSocket socket;
 	
 	private RemotePlayer hostPlayer = null;
@@ -146,22 +148,34 @@ public class MinicraftServer extends Thread implements MinicraftProtocol {
 	}
 	public List<RemotePlayer> getPlayersInRange(Level level, int xt, int yt, boolean useTrackRange) {
 		List<RemotePlayer> players = new ArrayList<>();
-		for(MinicraftServerThread thread: getThreads()) {
+		for(MinicraftServerThread thread: interestGrid.getSubscribers(level, xt, yt)) {
 			RemotePlayer rp = thread.getClient();
-			if(useTrackRange && rp.shouldTrack(xt, yt, level) || !useTrackRange && rp.shouldSync(xt, yt, level))
+			if(isInRange(rp, level, xt, yt, useTrackRange))
 				players.add(rp);
 		}
 		
 		return players;
 	}
 	
-	@Nullable
-	private RemotePlayer getIfPlayer(Entity e) {
-		if(e instanceof RemotePlayer) {
-			return (RemotePlayer) e;
-		}
-		else
-			return null;
+	private static boolean isInRange(RemotePlayer rp, Level level, int xt, int yt, boolean useTrackRange) {
+		return useTrackRange ? rp.shouldTrack(xt, yt, level) : rp.shouldSync(xt, yt, level);
+	}
+	
+	/// re-subscribes the clients to the parts of the world around them. Cheap for players that haven't changed cells.
+	public void updateInterest() {
+		for(MinicraftServerThread thread: getThreads())
+			interestGrid.update(thread);
+	}
+	
+	/// returns the threads subscribed to the area around the entity; each must still be checked with shouldSend().
+	private MinicraftServerThread[] getSubscribers(Entity e) {
+		return interestGrid.getSubscribers(e.getLevel(), e.x >> 4, e.y >> 4);
+	}
+	
+	private static boolean shouldSend(MinicraftServerThread thread, Entity e, boolean useTrackRange, boolean includeSelf) {
+		RemotePlayer rp = thread.getClient();
+		if(!includeSelf && rp == e) return false;
+		return thread.isValid() && isInRange(rp, e.getLevel(), e.x >> 4, e.y >> 4, useTrackRange);
 	}
 	
 	@Nullable
@@ -212,98 +226,72 @@ public class MinicraftServer extends Thread implements MinicraftProtocol {
 		return thread;
 	}
 	
-	private List<MinicraftServerThread> getAssociatedThreads(List<RemotePlayer> players) {
-		List<MinicraftServerThread> threads = new ArrayList<>();
-		
-		/// NOTE I could do this the other way around, by looping though the thread list, and adding those whose player is found in the given list, which might be slightly more optimal... but I think it's better that this tells you when a player in the list doesn't have a matching thread.
-		for(RemotePlayer client: players) {
-			MinicraftServerThread thread = getAssociatedThread(client);
-			if(thread.isValid())
-				threads.add(thread);
-			else
-				System.err.println("SERVER WARNING: couldn't find server thread for client " + client);
-		}
-		
-		return threads;
-	}
-	
 	public void broadcastEntityUpdate(Entity e) { broadcastEntityUpdate(e, false); }
 	public void broadcastEntityUpdate(Entity e, boolean updateSelf) {
+		if(ParallelTicker.defer(() -> broadcastEntityUpdate(e, updateSelf))) return; // packets made during a parallel tick are sent once it's over.
 		if(e.isRemoved()) {
 			if(Game.debug) System.out.println("SERVER tried to broadcast update of removed entity: " + e);
 			return;
 		}
-		List<RemotePlayer> players = getPlayersInRange(e, false);
-		//if(Game.debug && e instanceof Player) System.out.println("SERVER found " + players.size() + " players in range of " + e + ", inc self.");
-		if(!updateSelf) {
-			players.remove(getIfPlayer(e));
-			//if(Game.debug && e instanceof Player) System.out.println("Server removed player "+e+" of update: " + removed);
-		}
-		
-		for(MinicraftServerThread thread: getAssociatedThreads(players)) {
-			thread.sendEntityUpdate(e, e.getUpdates());
-		}
+		for(MinicraftServerThread thread: getSubscribers(e))
+			if(shouldSend(thread, e, false, updateSelf))
+				thread.sendEntityUpdate(e);
 		
 		e.flushUpdates(); // it is important that this method is only called once: right here.
 	}
 	
+	/// sends each client the entity updates gathered this tick.
+	public void flushEntityUpdates() {
+		for(MinicraftServerThread thread: getThreads())
+			thread.flushEntityUpdates();
+	}
+	
 	public void broadcastTileUpdate(Level level, int x, int y) {
-		broadcastData(InputType.TILE, Tile.getData(level.depth, x, y));
+		if(ParallelTicker.defer(() -> broadcastTileUpdate(level, x, y))) return;
+		for(MinicraftServerThread thread: getThreads())
+			thread.sendTileUpdate(level, x, y);
+	}
+	
+	/** Sends the tiles of a level that changed this tick, as one batch per client. */
+	public void broadcastTileChanges(Level level, int[] changed) {
+		if(ParallelTicker.defer(() -> broadcastTileChanges(level, changed))) return;
+		for(MinicraftServerThread thread: getThreads())
+			thread.sendTileChanges(level, changed);
 	}
 	
 	public void broadcastEntityAddition(Entity e) { broadcastEntityAddition(e, false); }
 	public void broadcastEntityAddition(Entity e, boolean addSelf) {
+		if(ParallelTicker.defer(() -> broadcastEntityAddition(e, addSelf))) return;
 		if(e.isRemoved()) {
 			if(Game.debug) System.out.println("SERVER tried to broadcast addition of removed entity: " + e);
 			return;
 		}
-		List<RemotePlayer> players = getPlayersInRange(e, true);
-		if(!addSelf)
-			players.remove(getIfPlayer(e)); // if "e" is a player, this removes it from the list.
-		int cnt = 0;
 		if(Game.debug && e instanceof Player) System.out.println("SERVER: broadcasting player addition of "+e);
-		for(MinicraftServerThread thread: getAssociatedThreads(players)) {
-			thread.sendEntityAddition(e);
-			cnt++;
-		}
-		if(Game.debug && e instanceof Player) System.out.println("SERVER: broadcasted player addition of "+e+" to "+cnt+" clients");
-	}
-	
-	private List<RemotePlayer> getPlayersToRemove(Entity e, boolean removeSelf) {
-		List<RemotePlayer> players = getPlayersInRange(e, true);
-		if(players.size() == 0) return players;
-		if (Game.debug && e instanceof Player) {
-			System.out.println("SERVER: sending removal of player " + e + " to " + players.size() + " players (may remove equal player): ");
-			for(RemotePlayer rp: players)
-				System.out.println(rp);
-		}
-		
-		if(!removeSelf)
-			players.remove(getIfPlayer(e)); // if "e" is a player, this removes it from the list.
-		
-		if (Game.debug && e instanceof Player) System.out.println("...now sending player removal to " + players.size() + " players.");
-		
-		return players;
+		for(MinicraftServerThread thread: getSubscribers(e))
+			if(shouldSend(thread, e, true, addSelf))
+				thread.sendEntityAddition(e);
 	}
 	
 	// remove only if on given level
 	public void broadcastEntityRemoval(Entity e, Level level, boolean removeSelf) {
-		List<RemotePlayer> players = getPlayersToRemove(e, removeSelf);
-		
+		if(ParallelTicker.defer(() -> broadcastEntityRemoval(e, level, removeSelf))) return;
 		if(level == null) {
 			if(Game.debug) System.out.println("SERVER: cannot remove entity "+e+" from specified level, level given is null; ignoring request to broadcast entity removal.");
 			return;
 		}
 		
-		for(MinicraftServerThread thread: getAssociatedThreads(players))
-			thread.sendEntityRemoval(e.eid, level.depth);
+		if (Game.debug && e instanceof Player) System.out.println("SERVER: sending removal of player " + e + " from level " + level.depth);
+		for(MinicraftServerThread thread: getSubscribers(e))
+			if(shouldSend(thread, e, true, removeSelf))
+				thread.sendEntityRemoval(e.eid, level.depth);
 	}
 	// remove regardless of level
 	public void broadcastEntityRemoval(Entity e, boolean removeSelf) {
-		List<RemotePlayer> players = getPlayersToRemove(e, removeSelf);
-		
-		for(MinicraftServerThread thread: getAssociatedThreads(players))
-			thread.sendEntityRemoval(e.eid);
+		if(ParallelTicker.defer(() -> broadcastEntityRemoval(e, removeSelf))) return;
+		if (Game.debug && e instanceof Player) System.out.println("SERVER: sending removal of player " + e);
+		for(MinicraftServerThread thread: getSubscribers(e))
+			if(shouldSend(thread, e, true, removeSelf))
+				thread.sendEntityRemoval(e.eid);
 	}
 	
 	public void saveWorld() {
@@ -312,16 +300,19 @@ public class MinicraftServer extends Thread implements MinicraftProtocol {
 	}
 	
 	public void broadcastNotification(String note, int notetime) {
+		if(ParallelTicker.defer(() -> broadcastNotification(note, notetime))) return;
 		String data = notetime + ";" + note;
 		broadcastData(InputType.NOTIFY, data);
 	}
 	
 	public void broadcastPlayerHurt(int eid, int damage, Direction attackDir) {
+		if(ParallelTicker.defer(() -> broadcastPlayerHurt(eid, damage, attackDir))) return;
 		for(MinicraftServerThread thread: getThreads())
 			thread.sendPlayerHurt(eid, damage, attackDir);
 	}
 
 	public void broadcastStopFishing(int eid) {
+		if(ParallelTicker.defer(() -> broadcastStopFishing(eid))) return;
 		for (MinicraftServerThread thread: getThreads())
 			thread.sendStopFishing(eid);
 	}
@@ -331,6 +322,7 @@ public class MinicraftServer extends Thread implements MinicraftProtocol {
 		updateGameVars(new MinicraftServerThread[] {sendTo});
 	}
 	public void updateGameVars(MinicraftServerThread[] sendTo) {
+		if(ParallelTicker.defer(() -> updateGameVars(sendTo))) return;
 		//if (Game.debug) System.out.println("SERVER: updating game vars...");
 		if(sendTo.length == 0) return;
 		
@@ -416,6 +408,10 @@ public class MinicraftServer extends Thread implements MinicraftProtocol {
 				/// versions match, and username is unique; make client player
 				clientPlayer.setUsername(username);
 				
+				// the client can read binary frames from here on, if it said so.
+				boolean binaryFrames = MinicraftConnection.binaryFramesEnabled && data.length > 2 && data[2].equals(BINARY_FRAMES_CAPABILITY);
+				serverThread.setBinaryFrames(binaryFrames);
+				
 				/// now, we need to check if this player has played in this world before. If they have, then all previous settings and items and such will be restored.
 				String playerdata = ""; // this stores the data fetched from the files.
 				
@@ -478,7 +474,8 @@ public class MinicraftServer extends Thread implements MinicraftProtocol {
 					World.levels[playerlvl].h,
 					playerlvl, // these bottom three are actually unnecessary because of the previous PLAYER packet.
 					clientPlayer.x,
-					clientPlayer.y
+					clientPlayer.y,
+					binaryFrames ? 1 : 0 // tells the client to send binary frames too.
 				};
 				StringBuilder sendString = new StringBuilder();
 				for(int val: toSend)
@@ -500,19 +497,22 @@ public class MinicraftServer extends Thread implements MinicraftProtocol {
 				
 				// if it's the same level, it will cancel out.
 				
-				byte[] tiledata = new byte[World.levels[levelidx].tiles.length*2];
-				for(int i = 0; i < tiledata.length/2 - 1; i++) {
-					tiledata[i*2] = World.levels[levelidx].tiles[i];
-					tiledata[i*2+1] = World.levels[levelidx].data[i];
-				}
 				serverThread.cachePacketTypes(InputType.tileUpdates);
 				
-				StringBuilder tiledataString = new StringBuilder();
-				for(byte b: tiledata) {
-					tiledataString.append(b).append(",");
+				boolean streamChunks = serverThread.usesBinaryFrames();
+				if(streamChunks) {
+					// only the chunks around the player are sent now; the rest follow the entities, so the client can start playing sooner.
+					serverThread.sendNearbyChunks(levelidx, clientPlayer.x >> 4, clientPlayer.y >> 4);
+				} else {
+					byte[] tiledata = new byte[World.levels[levelidx].tiles.length*2];
+					for(int i = 0; i < tiledata.length/2 - 1; i++) {
+						tiledata[i*2] = World.levels[levelidx].tiles[i];
+						tiledata[i*2+1] = World.levels[levelidx].data[i];
+					}
+					
+					serverThread.sendTiles(tiledata);
+					serverThread.sendCachedPackets();
 				}
-				serverThread.sendData(InputType.TILES, tiledataString.substring(0, tiledataString.length()-1));
-				serverThread.sendCachedPackets();
 				
 				// move the associated player to the level they requested -- they shouldn't be requesting it if they aren't going to transfer to it.
 				// moved to after the tile data is sent so that the client doesn't try to add anything to the level before it gets created.
@@ -545,6 +545,8 @@ public class MinicraftServer extends Thread implements MinicraftProtocol {
 				String edataToSend = edata.substring(0, Math.max(0, edata.length()-1)); // cut off trailing comma
 				
 				serverThread.sendData(InputType.ENTITIES, edataToSend);
+				if(streamChunks)
+					serverThread.sendRemainingChunks(); // the cached tile updates are newer than these, so they go after.
 				serverThread.sendCachedPackets();
 				
 				return true;
@@ -716,7 +718,9 @@ public class MinicraftServer extends Thread implements MinicraftProtocol {
 				entity.remove();
 				//if(Game.debug) System.out.println("SERVER: item entity pickup approved: " + entity);
 				serverThread.sendData(inType, alldata);
-				broadcastData(InputType.REMOVE, String.valueOf(entity.eid), serverThread);
+				for(MinicraftServerThread thread: getThreads())
+					if(thread != serverThread)
+						thread.sendEntityRemoval(entity.eid);
 				return true;
 			
 			case INTERACT:
@@ -784,7 +788,10 @@ public class MinicraftServer extends Thread implements MinicraftProtocol {
 				
 				clientPlayer.dir = Direction.values[Integer.parseInt(data[2])]; // do this AFTERWARD, so that the move method doesn't mess something up.
 				
-				if(moved) clientPlayer.updateSyncArea(oldx, oldy); // this updates the current client.
+				if(moved) {
+					interestGrid.update(serverThread);
+					clientPlayer.updateSyncArea(oldx, oldy); // this updates the current client.
+				}
 				
 				broadcastEntityUpdate(clientPlayer, !moved); // this will make it so that if the player is prevented from moving, the server will update the client, forcing it back to the last place the server recorded the player at. TODO this breaks down with a slow connection...
 				clientPlayer.walkDist++; // hopefully will make walking animations work. Actually, they should be sent with Mob's update... no, it doesn't update, it just feeds back.
@@ -817,6 +824,7 @@ public class MinicraftServer extends Thread implements MinicraftProtocol {
 	
 	protected synchronized void onThreadDisconnect(MinicraftServerThread thread) {
 		threadList.remove(thread);
+		interestGrid.remove(thread);
 		if(thread.getClient() == hostPlayer)
 			hostPlayer = null;
 	}
@@ -841,6 +849,7 @@ public class MinicraftServer extends Thread implements MinicraftProtocol {
 		} catch (IOException ignored) {}
 		
 		threadList.clear(); // should already be clear
+		interestGrid.clear();
 	}
 	
 	@Override
@@ -3,13 +3,20 @@ package minicraft.network;
 import javax.swing.Timer;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.zip.Deflater;
 
 import minicraft.core.Game;
 import minicraft.core.World;
@@ -20,6 +27,7 @@ import minicraft.entity.mob.RemotePlayer;
 import minicraft.item.Item;
 import minicraft.item.PowerGloveItem;
 import minicraft.level.Level;
+import minicraft.level.ParallelTicker;
 import minicraft.level.tile.Tile;
 import minicraft.saveload.Load;
 import minicraft.saveload.Save;
@@ -46,9 +54,42 @@ public class MinicraftServerThread extends MinicraftConnection {
 	private long manualPingTimestamp;
 	
 	
-	private List<InputType> packetTypesToKeep = new ArrayList<>();
-	private List<InputType> packetTypesToCache = new ArrayList<>();
-	private List<String> cachedPackets = new ArrayList<>();
+	private final List<InputType> packetTypesToKeep = new ArrayList<>();
+	private final List<InputType> packetTypesToCache = new ArrayList<>();
+	private final List<CachedPacket> cachedPackets = new ArrayList<>();
+	
+	private static class CachedPacket {
+		private final InputType inType;
+		private final String data; // one of these two is null.
+		private final ByteBuffer payload;
+		
+		CachedPacket(InputType inType, String data, ByteBuffer payload) {
+			this.inType = inType;
+			this.data = data;
+			this.payload = payload;
+		}
+	}
+	
+	/// LEVEL STREAMING
+	
+	private Level streamLevel; // the level whose chunks are being sent, or null.
+	private int streamLevelIdx;
+	private int[] streamChunks; // chunk indices, nearest to the player first.
+	private int streamPos, streamNearCount;
+	private Deflater chunkDeflater;
+	private byte[] chunkRaw, chunkFrame;
+	
+	/// ENTITY UPDATES
+	
+	private final ByteArrayOutputStream entityBatch = new ByteArrayOutputStream(); // this tick's entity updates, sent together by flushEntityUpdates().
+	private final DataOutputStream entityBatchOut = new DataOutputStream(entityBatch);
+	private final ByteArrayOutputStream entityRecord = new ByteArrayOutputStream();
+	private final DataOutputStream entityRecordOut = new DataOutputStream(entityRecord);
+	
+	/// TILE CHANGES
+	
+	private Level syncLevel; // the level last streamed to the client.
+	private final BitSet staleChunks = new BitSet(); // chunks of syncLevel with changes the client hasn't been sent, because they were out of its sync range.
 	
 	private final boolean valid;
 	
@@ -138,43 +179,280 @@ public class MinicraftServerThread extends MinicraftConnection {
 		sendData(InputType.INVALID, message);
 	}
 	
+	// the packet type lists are changed by the thread reading from the client, while the game sends packets; both lock cachedPackets.
 	void cachePacketTypes(List<InputType> packetTypes) {
-		packetTypesToCache.addAll(packetTypes);
-		packetTypesToKeep.removeAll(packetTypes);
+		synchronized (cachedPackets) {
+			packetTypesToCache.addAll(packetTypes);
+			packetTypesToKeep.removeAll(packetTypes);
+		}
 	}
 	
 	void sendCachedPackets() {
-		packetTypesToCache.clear();
-		
-		for(String packet: cachedPackets) {
-			InputType inType = InputType.values[Integer.parseInt(packet.substring(0, packet.indexOf(":")))];
-			packet = packet.substring(packet.indexOf(":")+1);
-			sendData(inType, packet);
+		synchronized (cachedPackets) {
+			packetTypesToCache.clear();
+			
+			for(CachedPacket packet: cachedPackets) {
+				if(packet.payload != null)
+					sendData(packet.inType, packet.payload);
+				else
+					sendData(packet.inType, packet.data);
+			}
+			
+			cachedPackets.clear();
 		}
-		
-		cachedPackets.clear();
 	}
 	
 	protected void sendData(InputType inType, String data) {
-		if(packetTypesToCache.contains(inType))
-			cachedPackets.add(inType.ordinal()+":"+data);
-		else if(!packetTypesToKeep.contains(inType))
-			super.sendData(inType, data);
+		if(ParallelTicker.defer(() -> sendData(inType, data))) return; // packets made during a parallel tick are sent once it's over.
+		synchronized (cachedPackets) {
+			if(packetTypesToCache.contains(inType)) {
+				cachedPackets.add(new CachedPacket(inType, data, null));
+				return;
+			}
+			if(packetTypesToKeep.contains(inType))
+				return;
+		}
+		super.sendData(inType, data);
+	}
+	
+	protected void sendData(InputType inType, ByteBuffer payload) {
+		if(ParallelTicker.defer(() -> sendData(inType, payload))) return;
+		synchronized (cachedPackets) {
+			if(packetTypesToCache.contains(inType)) {
+				cachedPackets.add(new CachedPacket(inType, null, payload));
+				return;
+			}
+			if(packetTypesToKeep.contains(inType))
+				return;
+		}
+		super.sendData(inType, payload);
 	}
 	
 	public void sendTileUpdate(Level level, int x, int y) {
 		sendTileUpdate(level.depth, x, y);
 	}
 	public void sendTileUpdate(int depth, int x, int y) {
-		String data = Tile.getData(depth, x, y);
-		if(data.length() > 0)
-			sendData(InputType.TILE, data);
+		if(!usesBinaryFrames()) {
+			String data = Tile.getData(depth, x, y);
+			if(data.length() > 0)
+				sendData(InputType.TILE, data);
+			return;
+		}
+		
+		int lvlidx = World.lvlIdx(depth);
+		Level level = lvlidx >= 0 && lvlidx < World.levels.length ? World.levels[lvlidx] : null;
+		if(level == null || x < 0 || y < 0 || x >= level.w || y >= level.h) return;
+		
+		// TILE frame: level index, tile position, tile id, tile data.
+		int pos = x + y * level.w;
+		ByteBuffer payload = ByteBuffer.allocate(7);
+		payload.put((byte) lvlidx).putInt(pos).put(level.tiles[pos]).put(level.data[pos]).flip();
+		sendData(InputType.TILE, payload);
+	}
+	
+	/**
+	 * Sends the client the changed tiles of a level. Clients using binary frames get the changes within their sync range in one
+	 * TILE frame; chunks with changes outside of it are marked stale, and sent whole once the player comes near them.
+	 */
+	public synchronized void sendTileChanges(Level level, int[] changed) {
+		if(!usesBinaryFrames()) {
+			for(int pos: changed)
+				sendTileUpdate(level, pos % level.w, pos / level.w);
+			return;
+		}
+		
+		if(level != syncLevel)
+			return; // the client doesn't have this level; it will get all of it when it loads it.
+		
+		if(!staleChunks.isEmpty())
+			sendStaleChunks();
+		
+		if(changed.length == 0) return;
+		
+		// TILE frame: level index, then the position, id and data of each tile.
+		ByteBuffer payload = null;
+		for(int pos: changed) {
+			int x = pos % level.w, y = pos / level.w;
+			if(!client.shouldSync(x, y, level)) {
+				staleChunks.set(x / LEVEL_CHUNK_SIZE + y / LEVEL_CHUNK_SIZE * getChunkWidth(level));
+				continue;
+			}
+			
+			if(payload == null)
+				payload = ByteBuffer.allocate(1 + changed.length * 6).put((byte) World.lvlIdx(level.depth));
+			payload.putInt(pos).put(level.tiles[pos]).put(level.data[pos]);
+		}
+		
+		if(payload != null) {
+			payload.flip();
+			sendData(InputType.TILE, payload);
+		}
+	}
+	
+	private void sendStaleChunks() {
+		int cw = getChunkWidth(syncLevel);
+		for(int chunk = staleChunks.nextSetBit(0); chunk >= 0; chunk = staleChunks.nextSetBit(chunk + 1)) {
+			int x0 = chunk % cw * LEVEL_CHUNK_SIZE, y0 = chunk / cw * LEVEL_CHUNK_SIZE;
+			// the tile of the chunk nearest to the player is in sync range if any of the chunk is.
+			int px = Math.max(x0, Math.min(x0 + LEVEL_CHUNK_SIZE - 1, client.x >> 4));
+			int py = Math.max(y0, Math.min(y0 + LEVEL_CHUNK_SIZE - 1, client.y >> 4));
+			if(client.shouldSync(px, py, syncLevel)) {
+				staleChunks.clear(chunk);
+				sendChunk(syncLevel, World.lvlIdx(syncLevel.depth), chunk, 0);
+			}
+		}
+	}
+	
+	private static int getChunkWidth(Level level) { return (level.w + LEVEL_CHUNK_SIZE - 1) / LEVEL_CHUNK_SIZE; }
+	
+	/// sends the interleaved tile id and data bytes of a whole level, as text; clients using binary frames get the level in chunks instead.
+	public void sendTiles(byte[] tiledata) {
+		StringBuilder tiledataString = new StringBuilder();
+		for(byte b: tiledata)
+			tiledataString.append(b).append(",");
+		sendData(InputType.TILES, tiledataString.substring(0, tiledataString.length()-1));
+	}
+	
+	/**
+	 * Starts streaming a level to the client as deflated chunks, ordered by distance from the given tile,
+	 * and sends the chunks around it. These are all the client needs to start playing; the rest are sent by
+	 * sendRemainingChunks(). Only for clients using binary frames.
+	 */
+	void sendNearbyChunks(int lvlidx, int xt, int yt) {
+		Level level = World.levels[lvlidx];
+		int cw = getChunkWidth(level);
+		int ch = (level.h + LEVEL_CHUNK_SIZE - 1) / LEVEL_CHUNK_SIZE;
+		int pcx = Math.max(0, Math.min(cw - 1, xt / LEVEL_CHUNK_SIZE));
+		int pcy = Math.max(0, Math.min(ch - 1, yt / LEVEL_CHUNK_SIZE));
+		
+		// sort the chunks by their distance from the player's chunk; the distance is kept in the high bits so a plain int sort works.
+		int[] order = new int[cw * ch];
+		int nearCount = 0;
+		for(int cy = 0; cy < ch; cy++) {
+			for(int cx = 0; cx < cw; cx++) {
+				int dist = Math.max(Math.abs(cx - pcx), Math.abs(cy - pcy));
+				if(dist <= 1) nearCount++;
+				order[cx + cy * cw] = dist << 20 | (cx + cy * cw);
+			}
+		}
+		Arrays.sort(order);
+		for(int i = 0; i < order.length; i++)
+			order[i] &= (1 << 20) - 1;
+		
+		synchronized (this) {
+			// every change from here on is either sent as it happens, or marked stale.
+			syncLevel = level;
+			staleChunks.clear();
+		}
+		
+		streamLevel = level;
+		streamLevelIdx = lvlidx;
+		streamChunks = order;
+		streamPos = 0;
+		streamNearCount = nearCount;
+		
+		while(streamPos < streamNearCount)
+			sendNextChunk();
+	}
+	
+	/** Sends the rest of the level started by sendNearbyChunks(). */
+	void sendRemainingChunks() {
+		if(streamLevel == null) return;
+		while(streamPos < streamChunks.length)
+			sendNextChunk();
+		streamLevel = null;
+		streamChunks = null;
+	}
+	
+	private void sendNextChunk() {
+		int chunk = streamChunks[streamPos++];
+		sendChunk(streamLevel, streamLevelIdx, chunk, streamPos == streamNearCount ? CHUNK_LAST_NEARBY : 0);
+	}
+	
+	// TILES frame: level index, chunk x, chunk y, flags, raw length, then the deflated tile ids and data of the chunk, row by row.
+	private synchronized void sendChunk(Level level, int lvlidx, int chunk, int flags) {
+		if(chunkDeflater == null) {
+			chunkDeflater = new Deflater(Deflater.BEST_SPEED);
+			chunkRaw = new byte[LEVEL_CHUNK_SIZE * LEVEL_CHUNK_SIZE * 2];
+			chunkFrame = new byte[CHUNK_HEADER_SIZE + chunkRaw.length + chunkRaw.length / 8 + 64]; // room for deflate to expand incompressible data.
+		}
+		
+		int cw = getChunkWidth(level);
+		int cx = chunk % cw, cy = chunk / cw;
+		int x0 = cx * LEVEL_CHUNK_SIZE, y0 = cy * LEVEL_CHUNK_SIZE;
+		int width = Math.min(LEVEL_CHUNK_SIZE, level.w - x0);
+		int height = Math.min(LEVEL_CHUNK_SIZE, level.h - y0);
+		
+		int area = width * height;
+		for(int y = 0; y < height; y++) {
+			System.arraycopy(level.tiles, x0 + (y0 + y) * level.w, chunkRaw, y * width, width);
+			System.arraycopy(level.data, x0 + (y0 + y) * level.w, chunkRaw, area + y * width, width);
+		}
+		
+		chunkDeflater.reset();
+		chunkDeflater.setInput(chunkRaw, 0, area * 2);
+		chunkDeflater.finish();
+		int compLen = 0;
+		while(!chunkDeflater.finished()) {
+			if(CHUNK_HEADER_SIZE + compLen == chunkFrame.length)
+				chunkFrame = Arrays.copyOf(chunkFrame, chunkFrame.length * 2);
+			compLen += chunkDeflater.deflate(chunkFrame, CHUNK_HEADER_SIZE + compLen, chunkFrame.length - CHUNK_HEADER_SIZE - compLen);
+		}
+		
+		ByteBuffer payload = ByteBuffer.wrap(chunkFrame, 0, CHUNK_HEADER_SIZE + compLen);
+		payload.put((byte) lvlidx).putShort((short) cx).putShort((short) cy).put((byte) flags);
+		payload.putInt(area * 2);
+		payload.position(0);
+		sendData(InputType.TILES, payload);
+	}
+	
+	/**
+	 * Sends the entity's changed fields. For clients using binary frames, the changes are added to this tick's
+	 * ENTITY_BATCH frame instead of being sent right away.
+	 */
+	public void sendEntityUpdate(Entity e) {
+		if(!usesBinaryFrames()) {
+			sendEntityUpdate(e, e.getUpdates());
+			return;
+		}
+		if(!e.hasUpdates()) return;
+		
+		// ENTITY_BATCH frame: for each entity, its id, the length of its deltas, then the deltas.
+		synchronized (entityBatch) {
+			try {
+				entityRecord.reset();
+				e.writeUpdates(entityRecordOut);
+				entityBatchOut.writeInt(e.eid);
+				entityBatchOut.writeInt(entityRecord.size());
+				entityRecord.writeTo(entityBatchOut);
+			} catch(IOException ex) {
+				System.err.println("SERVER could not write entity update for " + e + ":");
+				ex.printStackTrace();
+			}
+		}
+	}
+	
+	/** Sends the entity updates batched up since the last call, if there are any, in one frame. */
+	public void flushEntityUpdates() {
+		synchronized (entityBatch) {
+			if(entityBatch.size() == 0) return;
+			sendData(InputType.ENTITY_BATCH, ByteBuffer.wrap(entityBatch.toByteArray()));
+			entityBatch.reset();
+		}
 	}
 	
 	public void sendEntityUpdate(Entity e, String updateString) {
 		if(updateString.length() > 0) {
+			flushEntityUpdates(); // so that this doesn't arrive before older updates.
 			//if (Game.debug && e instanceof Player) System.out.println("SERVER sending player update to " + client + ": " + e + "; data = " + updateString);
-			sendData(InputType.ENTITY, e.eid+";"+updateString);
+			if(usesBinaryFrames()) {
+				// ENTITY frame: entity id, then the update string.
+				byte[] updates = updateString.getBytes(StandardCharsets.UTF_8);
+				ByteBuffer payload = ByteBuffer.allocate(4 + updates.length);
+				payload.putInt(e.eid).put(updates).flip();
+				sendData(InputType.ENTITY, payload);
+			} else
+				sendData(InputType.ENTITY, e.eid+";"+updateString);
 		}// else
 		//	if(Game.debug) System.out.println("SERVER: skipping entity update b/c no new fields: " + e);
 	}
@@ -185,15 +463,60 @@ public class MinicraftServerThread extends MinicraftConnection {
 		String edata = Save.writeEntity(e, false);
 		if(edata.length() == 0)
 			System.out.println("entity not worth adding to client level: " + e + "; not sending to " + client);
-		else
-			sendData(InputType.ADD, edata);
+		else {
+			flushEntityUpdates(); // additions and removals have to stay in order with the updates.
+			if(usesBinaryFrames())
+				sendData(InputType.ADD, encodeEntityAddition(edata));
+			else
+				sendData(InputType.ADD, edata);
+		}
+	}
+	
+	/**
+	 * ADD frame: entity id, x, y, level index, the entity name, whether there are class-specific fields, then those
+	 * fields of the entity string as UTF-8. The client puts the string back together; see MinicraftClient.decodeEntityAddition().
+	 */
+	private static ByteBuffer encodeEntityAddition(String edata) {
+		// edata is "name[x:y:eid:...:level]"; the fields between the id and the level depend on the entity class.
+		int open = edata.indexOf('[');
+		int xEnd = edata.indexOf(':', open + 1);
+		int yEnd = edata.indexOf(':', xEnd + 1);
+		int eidEnd = edata.indexOf(':', yEnd + 1);
+		int lvlStart = edata.lastIndexOf(':');
+		
+		byte[] name = edata.substring(0, open).getBytes(StandardCharsets.UTF_8);
+		byte[] extra = eidEnd == lvlStart ? null : edata.substring(eidEnd + 1, lvlStart).getBytes(StandardCharsets.UTF_8);
+		
+		ByteBuffer payload = ByteBuffer.allocate(4 * 3 + 1 + 2 + name.length + 1 + (extra == null ? 0 : extra.length));
+		payload.putInt(Integer.parseInt(edata.substring(yEnd + 1, eidEnd)));
+		payload.putInt(Integer.parseInt(edata.substring(open + 1, xEnd)));
+		payload.putInt(Integer.parseInt(edata.substring(xEnd + 1, yEnd)));
+		payload.put((byte) Integer.parseInt(edata.substring(lvlStart + 1, edata.length() - 1)));
+		payload.putShort((short) name.length).put(name);
+		payload.put((byte) (extra == null ? 0 : 1));
+		if(extra != null) payload.put(extra);
+		payload.flip();
+		return payload;
 	}
 	
 	public void sendEntityRemoval(int eid, int levelDepth) {
-		sendData(InputType.REMOVE, String.valueOf(eid)+";"+String.valueOf(levelDepth));
+		flushEntityUpdates();
+		if(usesBinaryFrames()) {
+			// REMOVE frame: entity id, then the level depth if the removal is only from that level.
+			ByteBuffer payload = ByteBuffer.allocate(8);
+			payload.putInt(eid).putInt(levelDepth).flip();
+			sendData(InputType.REMOVE, payload);
+		} else
+			sendData(InputType.REMOVE, String.valueOf(eid)+";"+String.valueOf(levelDepth));
 	}
 	public void sendEntityRemoval(int eid) { // remove regardless of current level
-		sendData(InputType.REMOVE, String.valueOf(eid));
+		flushEntityUpdates();
+		if(usesBinaryFrames()) {
+			ByteBuffer payload = ByteBuffer.allocate(4);
+			payload.putInt(eid).flip();
+			sendData(InputType.REMOVE, payload);
+		} else
+			sendData(InputType.REMOVE, String.valueOf(eid));
 	}
 	
 	public void sendNotification(String note, int notetime) {
@@ -7,9 +7,16 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import minicraft.core.Game;
 import minicraft.core.Network;
@@ -327,60 +334,34 @@ public class Load {
 		for(int l = World.maxLevelDepth; l >= World.minLevelDepth; l--) {
 			LoadingDisplay.setMessage(Level.getDepthString(l));
 			int lvlidx = World.lvlIdx(l);
-			loadFromFile(location + filename + lvlidx + extension);
 			
-			int lvlw = Integer.parseInt(data.get(0));
-			int lvlh = Integer.parseInt(data.get(1));
-			Settings.set("size", lvlw);
-			
-			byte[] tiles = new byte[lvlw * lvlh];
-			byte[] tdata = new byte[lvlw * lvlh];
-			
-			for(int x = 0; x < lvlw; x++) {
-				for(int y = 0; y < lvlh; y++) {
-					int tileArrIdx = y + x * lvlw;
-					int tileidx = x + y * lvlw; // the tiles are saved with x outer loop, and y inner loop, meaning that the list reads down, then right one, rather than right, then down one.
-					String tilename = data.get(tileidx + 3);
-					if(worldVer.compareTo(new Version("1.9.4-dev6")) < 0) {
-						int tileID = Integer.parseInt(tilename); // they were id numbers, not names, at this point
-						if(Tiles.oldids.get(tileID) != null)
-							tilename = Tiles.oldids.get(tileID);
-						else {
-							System.out.println("Tile list doesn't contain tile " + tileID);
-							tilename = "grass";
-						}
-					}
-
-					if(tilename.equalsIgnoreCase("WOOL") && worldVer.compareTo(new Version("2.0.6-dev4")) < 0) {
-						switch (Integer.parseInt(extradata.get(tileidx))) {
-							case 1:
-								tilename = "Red Wool";
-								break;
-							case 2:
-								tilename = "Yellow Wool";
-								break;
-							case 3:
-								tilename = "Green Wool";
-								break;
-							case 4:
-								tilename = "Blue Wool";
-								break;
-							case 5:
-								tilename = "Black Wool";
-								break;
-							default:
-								tilename = "Wool";
-						}
-					}
-
-					if(l == World.minLevelDepth+1 && tilename.equalsIgnoreCase("LAPIS") && worldVer.compareTo(new Version("2.0.3-dev6")) < 0) {
-						if(Math.random() < 0.8) // don't replace *all* the lapis
-							tilename = "Gem Ore";
-					}
-					tiles[tileArrIdx] = Tiles.get(tilename).id;
-					tdata[tileArrIdx] = Byte.parseByte(extradata.get(tileidx));
+			// the chunk file, then its backup from the save before, then the old text files.
+			byte[][] maps = null;
+			String chunkFile = location + filename + lvlidx + Save.levelChunkSuffix + extension;
+			boolean hadChunks = false;
+			for(String file: new String[] {chunkFile, chunkFile + Save.levelBackupSuffix}) {
+				if(maps != null || !new File(file).exists()) continue;
+				hadChunks = true;
+				try {
+					maps = loadLevelChunks(file);
+				} catch(IOException ex) {
+					System.err.println("Failed to read level file " + file + "; trying the next copy of the level.");
+					ex.printStackTrace();
 				}
 			}
+			if(hadChunks)
+				LoadingDisplay.progress(percentInc);
+			if(maps == null) {
+				String legacyFile = location + filename + lvlidx + extension;
+				if(!new File(legacyFile).exists())
+					throw new IllegalStateException("Level file " + chunkFile + " is damaged or missing, and there is no backup or old level file to load instead.");
+				maps = loadLegacyLevel(legacyFile, l);
+			}
+			
+			byte[] tiles = maps[0];
+			byte[] tdata = maps[1];
+			int lvlw = (Integer) Settings.get("size"); // set by the level loaders; levels are always square.
+			int lvlh = lvlw;
 			
 			Level parent = World.levels[World.lvlIdx(l+1)];
 			World.levels[lvlidx] = new Level(lvlw, lvlh, l, parent, false);
@@ -408,6 +389,152 @@ public class Load {
 		}
 	}
 	
+	/** Reads a level file written by Save.writeLevelChunks(), and returns the tiles and data arrays. Any damage to the file is reported as an IOException. */
+	public static byte[][] loadLevelChunks(String filename) throws IOException {
+		try {
+			return readLevelChunks(filename);
+		} catch(RuntimeException ex) { // thrown by the buffer reads when a length in the file is wrong.
+			throw new IOException("Corrupt level file " + filename, ex);
+		}
+	}
+	
+	private static byte[][] readLevelChunks(String filename) throws IOException {
+		ByteBuffer buf;
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			buf = ByteBuffer.allocate((int)channel.size());
+			while(buf.hasRemaining() && channel.read(buf) >= 0);
+		}
+		buf.flip();
+		
+		if(buf.getInt() != Save.LEVEL_MAGIC)
+			throw new IOException("Not a level file: " + filename);
+		int formatVersion = buf.getInt();
+		if(formatVersion > Save.LEVEL_FORMAT_VERSION)
+			throw new IOException("Level file " + filename + " has unknown format version " + formatVersion);
+		
+		int lvlw = buf.getInt();
+		int lvlh = buf.getInt();
+		buf.getInt(); // depth; the file name already tells us this.
+		if(lvlw <= 0 || lvlh <= 0 || (long)lvlw * lvlh > Integer.MAX_VALUE / 2)
+			throw new IOException("Level file " + filename + " has bad size " + lvlw + "x" + lvlh);
+		
+		// the palette maps ids in the file to the current tile ids.
+		byte[] idMap = new byte[256];
+		int paletteSize = buf.getInt();
+		if(paletteSize < 0 || paletteSize > idMap.length)
+			throw new IOException("Level file " + filename + " has bad palette size " + paletteSize);
+		for(int i = 0; i < paletteSize; i++) {
+			int fileId = buf.get() & 0xFF;
+			int nameLen = buf.getShort() & 0xFFFF;
+			if(nameLen > buf.remaining())
+				throw new IOException("Truncated palette in level file " + filename);
+			byte[] name = new byte[nameLen];
+			buf.get(name);
+			idMap[fileId] = Tiles.get(new String(name, StandardCharsets.UTF_8)).id;
+		}
+		
+		byte[] tiles = new byte[lvlw * lvlh];
+		byte[] tdata = new byte[lvlw * lvlh];
+		byte[] raw = new byte[lvlw * Save.CHUNK_ROWS * 2];
+		Inflater inflater = new Inflater();
+		try {
+			for(int y = 0; y < lvlh; y += Save.CHUNK_ROWS) {
+				int rawLen = buf.getInt();
+				int compLen = buf.getInt();
+				int len = Math.min(Save.CHUNK_ROWS, lvlh - y) * lvlw;
+				if(rawLen != len * 2 || compLen < 0 || compLen > buf.remaining())
+					throw new IOException("Corrupt chunk at row " + y + " in level file " + filename);
+				
+				inflater.reset();
+				inflater.setInput(buf.array(), buf.position(), compLen);
+				buf.position(buf.position() + compLen);
+				
+				int read = 0;
+				while(read < rawLen && !inflater.finished()) {
+					int n = inflater.inflate(raw, read, rawLen - read);
+					if(n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+						break; // the chunk ends early; caught below.
+					read += n;
+				}
+				if(read != rawLen)
+					throw new IOException("Truncated chunk at row " + y + " in level file " + filename);
+				
+				for(int i = 0; i < len; i++)
+					tiles[y * lvlw + i] = idMap[raw[i] & 0xFF];
+				System.arraycopy(raw, len, tdata, y * lvlw, len);
+			}
+		} catch(DataFormatException ex) {
+			throw new IOException("Corrupt level file " + filename, ex);
+		} finally {
+			inflater.end();
+		}
+		
+		Settings.set("size", lvlw);
+		return new byte[][] {tiles, tdata};
+	}
+	
+	/// reads the comma-separated tile name and data lists written by versions before the binary level format.
+	private byte[][] loadLegacyLevel(String filename, int l) {
+		loadFromFile(filename);
+		if(data.size() < 2)
+			throw new IllegalStateException("Level file " + filename + " is damaged.");
+		
+		int lvlw = Integer.parseInt(data.get(0));
+		int lvlh = Integer.parseInt(data.get(1));
+		Settings.set("size", lvlw);
+		
+		byte[] tiles = new byte[lvlw * lvlh];
+		byte[] tdata = new byte[lvlw * lvlh];
+		
+		for(int x = 0; x < lvlw; x++) {
+			for(int y = 0; y < lvlh; y++) {
+				int tileArrIdx = y + x * lvlw;
+				int tileidx = x + y * lvlw; // the tiles are saved with x outer loop, and y inner loop, meaning that the list reads down, then right one, rather than right, then down one.
+				String tilename = data.get(tileidx + 3);
+				if(worldVer.compareTo(new Version("1.9.4-dev6")) < 0) {
+					int tileID = Integer.parseInt(tilename); // they were id numbers, not names, at this point
+					if(Tiles.oldids.get(tileID) != null)
+						tilename = Tiles.oldids.get(tileID);
+					else {
+						System.out.println("Tile list doesn't contain tile " + tileID);
+						tilename = "grass";
+					}
+				}
+
+				if(tilename.equalsIgnoreCase("WOOL") && worldVer.compareTo(new Version("2.0.6-dev4")) < 0) {
+					switch (Integer.parseInt(extradata.get(tileidx))) {
+						case 1:
+							tilename = "Red Wool";
+							break;
+						case 2:
+							tilename = "Yellow Wool";
+							break;
+						case 3:
+							tilename = "Green Wool";
+							break;
+						case 4:
+							tilename = "Blue Wool";
+							break;
+						case 5:
+							tilename = "Black Wool";
+							break;
+						default:
+							tilename = "Wool";
+					}
+				}
+
+				if(l == World.minLevelDepth+1 && tilename.equalsIgnoreCase("LAPIS") && worldVer.compareTo(new Version("2.0.3-dev6")) < 0) {
+					if(Math.random() < 0.8) // don't replace *all* the lapis
+						tilename = "Gem Ore";
+				}
+				tiles[tileArrIdx] = Tiles.get(tilename).id;
+				tdata[tileArrIdx] = Byte.parseByte(extradata.get(tileidx));
+			}
+		}
+		
+		return new byte[][] {tiles, tdata};
+	}
+	
 	public void loadPlayer(String filename, Player player) {
 		LoadingDisplay.setMessage("Player");
 		loadFromFile(location + filename + extension);
@@ -4,9 +4,20 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.zip.Deflater;
 
 import minicraft.core.Game;
 import minicraft.core.Renderer;
@@ -32,6 +43,8 @@ import minicraft.entity.mob.RemotePlayer;
 import minicraft.entity.particle.Particle;
 import minicraft.entity.particle.TextParticle;
 import minicraft.item.*;
+import minicraft.level.Level;
+import minicraft.level.tile.Tiles;
 import minicraft.network.MinicraftServer;
 import minicraft.screen.LoadingDisplay;
 import minicraft.screen.MultiplayerDisplay;
@@ -44,6 +57,13 @@ public class Save {
 	
 	public static String extension = ".miniplussave";
 	
+	/// binary level files; see writeLevelChunks() for the layout.
+	public static final String levelChunkSuffix = "Chunks";
+	public static final String levelBackupSuffix = ".bak"; // the level file from the save before, added after the extension.
+	static final int LEVEL_MAGIC = 0x4D504C56; // "MPLV"
+	static final int LEVEL_FORMAT_VERSION = 1;
+	static final int CHUNK_ROWS = 32; // number of tile rows stored in each compressed chunk.
+	
 	List<String> data;
 	Game game;
 	
@@ -135,12 +155,16 @@ public class Save {
 		
 		data.clear();
 		
-		LoadingDisplay.progress(7);
+		updateProgress(7);
+	}
+	
+	private static void updateProgress(float amt) {
+		LoadingDisplay.progress(amt);
 		if(LoadingDisplay.getPercentage() > 100) {
 			LoadingDisplay.setPercentage(100);
 		}
 		
-		Renderer.render(); // AH HA!!! HERE'S AN IMPORTANT STATEMENT!!!!
+		Renderer.recordFrame(); // AH HA!!! HERE'S AN IMPORTANT STATEMENT!!!!
 	}
 	
 	public static void writeToFile(String filename, String[] savedata, boolean isWorldSave) throws IOException {
@@ -205,30 +229,121 @@ public class Save {
 	private void writeWorld(String filename) {
 		LoadingDisplay.setMessage("Levels");
 		for(int l = 0; l < World.levels.length; l++) {
-			String worldSize = String.valueOf(Settings.get("size"));
-			data.add(worldSize);
-			data.add(worldSize);
-			data.add(String.valueOf(World.levels[l].depth));
+			try {
+				writeLevelChunks(location + filename + l + levelChunkSuffix + extension, World.levels[l]);
+			} catch(IOException ex) {
+				System.err.println("Failed to write level " + l + ":");
+				ex.printStackTrace();
+				continue;
+			}
 			
-			for(int x = 0; x < World.levels[l].w; x++) {
-				for(int y = 0; y < World.levels[l].h; y++) {
-					data.add(String.valueOf(World.levels[l].getTile(x, y).name));
-				}
+			// the old text files are only needed as a fallback until there is a backup of the chunk file.
+			if(new File(location + filename + l + levelChunkSuffix + extension + levelBackupSuffix).exists()) {
+				new File(location + filename + l + extension).delete();
+				new File(location + filename + l + "data" + extension).delete();
 			}
 			
-			writeToFile(location + filename + l + extension, data);
+			updateProgress(14);
+		}
+	}
+	
+	/**
+	 * Writes a level's tiles and data in the binary chunk format.
+	 * The file begins with a header: magic number, format version, width, height, depth, and a palette
+	 * mapping each tile id used in the level to its tile name, so the ids can be remapped if they ever change.
+	 * After that come the chunks, each holding CHUNK_ROWS rows of the tiles array followed by the same rows
+	 * of the data array, deflate-compressed, and prefixed with its uncompressed and compressed sizes.
+	 * The file is written beside the target first and then moved over it, so a crash while saving leaves the old file intact.
+	 * The old file is kept as a backup, with levelBackupSuffix added to its name, for Load to fall back to if the new one is damaged.
+	 */
+	public static void writeLevelChunks(String filename, Level level) throws IOException {
+		boolean[] used = new boolean[256];
+		for(byte id: level.tiles)
+			used[id & 0xFF] = true;
+		
+		List<byte[]> names = new ArrayList<>();
+		List<Integer> ids = new ArrayList<>();
+		int headerSize = 4 * 6;
+		for(int id = 0; id < used.length; id++) {
+			if(!used[id]) continue;
+			byte[] name = Tiles.get(id).name.getBytes(StandardCharsets.UTF_8);
+			ids.add(id);
+			names.add(name);
+			headerSize += 1 + 2 + name.length;
 		}
 		
-		for(int l = 0; l < World.levels.length; l++) {
-			for(int x = 0; x < World.levels[l].w; x++) {
-				for(int y = 0; y < World.levels[l].h; y++) {
-					data.add(String.valueOf(World.levels[l].getData(x, y)));
+		ByteBuffer header = ByteBuffer.allocate(headerSize);
+		header.putInt(LEVEL_MAGIC).putInt(LEVEL_FORMAT_VERSION);
+		header.putInt(level.w).putInt(level.h).putInt(level.depth);
+		header.putInt(ids.size());
+		for(int i = 0; i < ids.size(); i++) {
+			header.put((byte)(int)ids.get(i));
+			header.putShort((short)names.get(i).length);
+			header.put(names.get(i));
+		}
+		header.flip();
+		
+		int rowBytes = level.w;
+		byte[] raw = new byte[rowBytes * CHUNK_ROWS * 2];
+		byte[] compressed = new byte[raw.length + raw.length / 8 + 64];
+		ByteBuffer chunkHeader = ByteBuffer.allocate(8);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		
+		Path target = Paths.get(filename);
+		Path temp = Paths.get(filename + ".tmp");
+		boolean moved = false;
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				writeFully(channel, header);
+				
+				for(int y = 0; y < level.h; y += CHUNK_ROWS) {
+					int rows = Math.min(CHUNK_ROWS, level.h - y);
+					int len = rows * rowBytes;
+					System.arraycopy(level.tiles, y * rowBytes, raw, 0, len);
+					System.arraycopy(level.data, y * rowBytes, raw, len, len);
+					
+					deflater.reset();
+					deflater.setInput(raw, 0, len * 2);
+					deflater.finish();
+					int compLen = 0;
+					while(!deflater.finished()) {
+						if(compLen == compressed.length)
+							compressed = Arrays.copyOf(compressed, compressed.length * 2);
+						compLen += deflater.deflate(compressed, compLen, compressed.length - compLen);
+					}
+					
+					chunkHeader.clear();
+					chunkHeader.putInt(len * 2).putInt(compLen).flip();
+					writeFully(channel, chunkHeader);
+					writeFully(channel, ByteBuffer.wrap(compressed, 0, compLen));
 				}
+				channel.force(true);
+			} finally {
+				deflater.end();
 			}
 			
-			writeToFile(location + filename + l + "data" + extension, data);
+			if(Files.exists(target))
+				replace(target, Paths.get(filename + levelBackupSuffix));
+			replace(temp, target);
+			moved = true;
+		} finally {
+			if(!moved)
+				Files.deleteIfExists(temp);
 		}
-		
+	}
+	
+	/// moves the file over the target, atomically where the file system allows it.
+	private static void replace(Path file, Path target) throws IOException {
+		try {
+			Files.move(file, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch(AtomicMoveNotSupportedException ex) {
+			Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining())
+			channel.write(buffer);
 	}
 	
 	private void writePlayer(String filename, Player player) {
@@ -43,6 +43,8 @@ public class Menu {
 	private int dispSelection = 0;
 	private int offset = 0;
 	
+	private final MenuLayer layer = new MenuLayer(); // keeps the drawn menu while it doesn't change.
+	
 	
 	private Menu() {}
 	protected Menu(Menu m) {
@@ -180,6 +182,14 @@ public class Menu {
 	}
 	
 	public void render(Screen screen) {
+		int end = wrap ? offset + displayLength : Math.min(offset + displayLength, entries.size());
+		if(layer.update(screen, selection, offset, bounds.getLeft(), bounds.getTop(), entries, offset, end))
+			layer.render(screen, this::renderMenu);
+		else
+			renderMenu(screen);
+	}
+	
+	private void renderMenu(Screen screen) {
 		renderFrame(screen);
 		
 		// render the title
@@ -0,0 +1,109 @@
+package minicraft.screen;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import minicraft.gfx.Screen;
+import minicraft.screen.entry.ListEntry;
+
+/**
+ * The pixels of a menu, kept from one frame to the next while the menu looks the same, so that drawing it is one copy.
+ * A menu is taken to look the same while its position, selection and scroll, and the text, color and visibility
+ * of the entries it shows, stay the same.
+ * Only a menu that looked the same on two frames in a row is kept, so menus that change all the time are just drawn as usual.
+ */
+class MenuLayer {
+
+	private Screen canvas = null; // the whole screen, to draw the menu on.
+	private Screen canvasModel = null; // the screen the canvas was made for.
+	private int[] pixels = null; // the part of the canvas that was drawn on; null if the menu hasn't been kept yet.
+	private int x, y, width;
+
+	// what the menu looked like the last time.
+	private Screen screen = null;
+	private boolean customTextures;
+	private int selection, offset, size, left, top;
+	private ListEntry[] entries = new ListEntry[0];
+	private String[] texts = new String[0];
+	private int[] colors = new int[0];
+	private boolean[] visible = new boolean[0], selectable = new boolean[0]; // the selection arrows depend on both.
+
+	/** Takes note of what the menu looks like now, with the entries from first to last (exclusive) shown; returns true if that is the same as the last time. */
+	boolean update(Screen screen, int selection, int offset, int left, int top, List<ListEntry> list, int first, int last) {
+		boolean same = screen == this.screen && Screen.usesCustomTextures() == customTextures && selection == this.selection && offset == this.offset
+			&& list.size() == size && left == this.left && top == this.top && last - first == entries.length;
+
+		this.screen = screen;
+		customTextures = Screen.usesCustomTextures();
+		this.selection = selection;
+		this.offset = offset;
+		size = list.size();
+		this.left = left;
+		this.top = top;
+		if(last - first != entries.length) {
+			entries = new ListEntry[last - first];
+			texts = new String[last - first];
+			colors = new int[last - first];
+			visible = new boolean[last - first];
+			selectable = new boolean[last - first];
+		}
+
+		for(int i = first; i < last && size > 0; i++) {
+			int idx = i % size;
+			ListEntry entry = list.get(idx);
+			String text = entry.toString();
+			int color = entry.getColor(idx == selection);
+			int n = i - first;
+			if(entry != entries[n] || !text.equals(texts[n]) || color != colors[n] || entry.isVisible() != visible[n] || entry.isSelectable() != selectable[n]) {
+				same = false;
+				entries[n] = entry;
+				texts[n] = text;
+				colors[n] = color;
+				visible[n] = entry.isVisible();
+				selectable[n] = entry.isSelectable();
+			}
+		}
+
+		if(!same) pixels = null;
+		return same;
+	}
+
+	/** Draws the menu from the kept pixels, drawing them first with the given painter if they haven't been kept yet. Only call this when update() returned true. */
+	void render(Screen screen, Consumer<Screen> painter) {
+		if(pixels == null) {
+			if(canvasModel != screen) {
+				canvas = new Screen(screen, Screen.w, Screen.h);
+				canvasModel = screen;
+			}
+			Arrays.fill(canvas.pixels, -1); // transparent
+			painter.accept(canvas);
+			keep();
+		}
+
+		if(width > 0)
+			screen.renderPixels(x, y, pixels, width);
+	}
+
+	/// keeps the smallest rectangle of the canvas with everything that was drawn.
+	private void keep() {
+		int x0 = Screen.w, y0 = Screen.h, x1 = -1, y1 = -1;
+		int[] canvas = this.canvas.pixels;
+		for(int yy = 0; yy < Screen.h; yy++) {
+			for(int xx = 0; xx < Screen.w; xx++) {
+				if(canvas[xx + yy * Screen.w] < 0) continue;
+				x0 = Math.min(x0, xx);
+				x1 = Math.max(x1, xx);
+				y0 = Math.min(y0, yy);
+				y1 = Math.max(y1, yy);
+			}
+		}
+
+		x = Math.min(x0, x1 + 1);
+		y = Math.min(y0, y1 + 1);
+		width = x1 + 1 - x;
+		pixels = new int[width * (y1 + 1 - y)];
+		for(int yy = 0; yy < y1 + 1 - y; yy++)
+			System.arraycopy(canvas, x + (y + yy) * Screen.w, pixels, yy * width, width);
+	}
+}
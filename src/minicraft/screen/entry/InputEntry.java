@@ -48,9 +48,12 @@ public class InputEntry extends ListEntry {
 	}
 	
 	public void render(Screen screen, int x, int y, boolean isSelected) {
-		Font.draw(toString(), screen, x, y, isValid() ? isSelected ? Color.GREEN : COL_UNSLCT : Color.RED);
+		Font.draw(toString(), screen, x, y, getColor(isSelected));
 	}
 	
+	@Override
+	public int getColor(boolean isSelected) { return isValid() ? isSelected ? Color.GREEN : COL_UNSLCT : Color.RED; }
+	
 	public boolean isValid() {
 		return userInput.matches(regex);
 	}
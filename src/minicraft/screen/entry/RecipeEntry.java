@@ -29,11 +29,14 @@ public class RecipeEntry extends ItemEntry {
 	@Override
 	public void render(Screen screen, int x, int y, boolean isSelected) {
 		if(isVisible()) {
-			Font.draw(toString(), screen, x, y, recipe.getCanCraft() ? COL_SLCT : COL_UNSLCT);
+			Font.draw(toString(), screen, x, y, getColor(isSelected));
 			getItem().sprite.render(screen, x, y);
 		}
 	}
 	
+	@Override
+	public int getColor(boolean isSelected) { return recipe.getCanCraft() ? COL_SLCT : COL_UNSLCT; }
+	
 	@Override
 	public String toString() {
 		return super.toString() + (recipe.getAmount() > 1 ? " x" + recipe.getAmount() : "");